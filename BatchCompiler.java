@@ -0,0 +1,171 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * BatchCompiler
+ *
+ * Compiles many egg files in one JVM. The command line is
+ *
+ *    P6 --batch <outdir> <infile>...
+ *
+ * where an infile of the form @<manifest> names a file that lists one
+ * input path per line. Each input a/b/foo.egg is compiled to
+ * <outdir>/foo.s. The files are compiled on a work-stealing pool with one
+ * worker per core; their diagnostics and results are printed in input
+ * order, one block per file, so output from different files never
+ * interleaves.
+ *
+ * The result line of each file carries its P6.RESULT_* code. The exit
+ * status is RESULT_CORRECT if every file compiled and RESULT_OTHER_ERROR
+ * otherwise.
+ */
+public class BatchCompiler {
+	private File outDir;
+	private List<String> inputs;
+	private PrintStream outStream = System.err;
+
+	/**
+	 * @param outDir directory the .s files are written to
+	 * @param inputs paths of the egg files to compile
+	 */
+	public BatchCompiler(File outDir, List<String> inputs) {
+		this.outDir = outDir;
+		this.inputs = inputs;
+	}
+
+	/**
+	 * Builds a batch from the arguments following --batch.
+	 * @param args command line args array for [<outdir> <infile>...]
+	 * @throws IOException if a manifest cannot be read
+	 */
+	public static BatchCompiler fromArgs(String[] args) throws IOException {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("please supply an output "
+				+ "directory and at least one input file.");
+		}
+
+		List<String> inputs = new ArrayList<String>();
+		for (int k = 1; k < args.length; k++) {
+			if (args[k].startsWith("@")) {
+				for (String line : Files.readAllLines(Paths.get(args[k].substring(1)))) {
+					if (!line.trim().isEmpty()) {
+						inputs.add(line.trim());
+					}
+				}
+			} else {
+				inputs.add(args[k]);
+			}
+		}
+		return new BatchCompiler(new File(args[0]), inputs);
+	}
+
+	/**
+	 * Result of compiling one file of the batch.
+	 */
+	static class Result {
+		String infile;
+		int resultCode;
+		String diagnostics;
+
+		Result(String infile, int resultCode, String diagnostics) {
+			this.infile = infile;
+			this.resultCode = resultCode;
+			this.diagnostics = diagnostics;
+		}
+	}
+
+	/**
+	 * Compiles every input and reports on each of them.
+	 * @return the aggregated exit status
+	 */
+	public int run() {
+		outDir.mkdirs();
+
+		// two inputs with the same base name would write the same .s file
+		Set<String> outfiles = new HashSet<String>();
+		for (String infile : inputs) {
+			if (!outfiles.add(outfileFor(infile).getPath())) {
+				outStream.println("more than one input compiles to "
+					+ outfileFor(infile));
+				return P6.RESULT_OTHER_ERROR;
+			}
+		}
+
+		ForkJoinPool pool =
+			new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		List<Future<Result>> results = new ArrayList<Future<Result>>();
+		for (final String infile : inputs) {
+			results.add(pool.submit(new Callable<Result>() {
+				public Result call() {
+					return compile(infile);
+				}
+			}));
+		}
+
+		int failed = 0;
+		try {
+			for (Future<Result> future : results) {
+				Result result = future.get();
+				outStream.print(result.diagnostics);
+				outStream.println(result.infile + ": " + result.resultCode
+					+ " " + P6.resultMessage(result.resultCode));
+				if (result.resultCode != P6.RESULT_CORRECT) {
+					failed++;
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return P6.RESULT_OTHER_ERROR;
+		} catch (ExecutionException ex) {
+			outStream.println("unexpected " + ex.getCause()
+				+ " in BatchCompiler.run");
+			return P6.RESULT_OTHER_ERROR;
+		} finally {
+			pool.shutdown();
+		}
+
+		outStream.println((inputs.size() - failed) + " of " + inputs.size()
+			+ " files compiled");
+		return failed == 0 ? P6.RESULT_CORRECT : P6.RESULT_OTHER_ERROR;
+	}
+
+	/**
+	 * Compiles one file, collecting its diagnostics.
+	 */
+	Result compile(String infile) {
+		ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+		P6 instance = new P6(new PrintStream(diagnostics, true));
+		int resultCode;
+		try {
+			instance.setInfile(infile);
+			instance.setOutfile(outfileFor(infile).getPath());
+			resultCode = instance.process();
+		} catch (Exception ex) {
+			// the file could not be opened
+			new PrintStream(diagnostics, true).println(ex.getMessage());
+			resultCode = P6.RESULT_OTHER_ERROR;
+		} catch (Throwable ex) {
+			// the compiler itself failed, say on a deeply nested input; that
+			// is this file's result, so the rest of the batch is reported
+			new PrintStream(diagnostics, true).println("unexpected " + ex);
+			resultCode = P6.RESULT_OTHER_ERROR;
+		} finally {
+			instance.cleanup();
+		}
+		return new Result(infile, resultCode, diagnostics.toString());
+	}
+
+	/**
+	 * Returns the .s file that the given input is compiled to.
+	 */
+	File outfileFor(String infile) {
+		String name = new File(infile).getName();
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		return new File(outDir, name + ".s");
+	}
+}
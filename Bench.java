@@ -0,0 +1,488 @@
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+
+import javax.management.*;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Bench
+ *
+ * Benchmarks of the compiler on large generated programs. The command
+ * line is
+ *
+ *    java Bench <benchmark> [<functions>]
+ *
+ * where <functions> sets the size of the generated program (default
+ * 2000, or 20000 for lexer, tokens, relex and input). The benchmarks are
+ *    pipeline   the phases one after another vs. P6 --pipeline
+ *    codegen    sequential vs. P6 --parallel-codegen
+ *    analysis   sequential vs. P6 --parallel-analysis
+ *    memory     peak live heap of sequential vs. P6 --stream, for
+ *               programs of one, two, four and eight times the size
+ *    literals   peak live heap of compiling a program that is mostly
+ *               string literals, with Yylex, which copies each literal
+ *               into a String, vs. P6 --fast-lexer, whose literals stay
+ *               in the input buffer
+ *    lexer      scanning the whole input with Yylex vs. FastLexer, and
+ *               into a TokenStream with FastLexer vs. ParallelLexer
+ *    tokens     bytes allocated per token by Yylex, by FastLexer, by
+ *               FastLexer filling a TokenStream, and by that and a
+ *               Cursor reading the stream as the parser would
+ *    relex      bringing a TokenStream up to date after typing a letter
+ *               into and deleting it from an identifier in the middle of
+ *               the input, by scanning the whole again vs. with
+ *               IncrementalLexer
+ *    input      reading and scanning the whole input with Yylex from a
+ *               FileReader vs. from a MappedSource, and with FastLexer
+ *               from Files.readAllBytes vs. from a MappedSource
+ *    startup    time from launching a JVM to the output of compiling
+ *               test.egg, from the classes on the classpath vs. from
+ *               egg.jar with the archive made by make cds
+ *
+ * Each variant is run a few times to warm up and then timed; the median
+ * time is reported. The tokens benchmark instead reports the bytes the
+ * thread allocated during one run, over the number of tokens. The memory
+ * benchmark reports the most heap still in use after any garbage
+ * collection during one compile; running it with a small young
+ * generation (say, java -Xmn4m) makes collections, and so the measure,
+ * more frequent.
+ */
+public class Bench {
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	private static PrintStream outStream = System.out;
+
+	/**
+	 * Something to time: one compile of the benchmark's input.
+	 */
+	interface Variant {
+		void run() throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			outStream.println("usage: java Bench <benchmark> [<functions>]");
+			System.exit(P6.RESULT_OTHER_ERROR);
+		}
+		if (args[0].equals("startup")) {
+			startup();
+			return;
+		}
+		int functions = args.length > 1 ? Integer.parseInt(args[1])
+			: args[0].equals("lexer") || args[0].equals("tokens")
+				|| args[0].equals("relex") || args[0].equals("input")
+				? 20000 : 2000;
+		final File infile = File.createTempFile("bench", ".egg");
+		final File outfile = File.createTempFile("bench", ".s");
+		infile.deleteOnExit();
+		outfile.deleteOnExit();
+		Files.write(infile.toPath(), (args[0].equals("literals")
+			? literalProgram(functions) : program(functions)).getBytes());
+		outStream.println(args[0] + ": " + functions + " functions, "
+			+ infile.length() + " bytes");
+
+		switch (args[0]) {
+		case "pipeline":
+			time("sequential", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					compile(instance, infile, outfile);
+				}
+			});
+			time("pipelined", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					instance.setPipelined(true);
+					compile(instance, infile, outfile);
+				}
+			});
+			break;
+		case "codegen":
+			time("sequential", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					compile(instance, infile, outfile);
+				}
+			});
+			time("parallel", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					instance.setParallelCodeGen(true);
+					compile(instance, infile, outfile);
+				}
+			});
+			break;
+		case "lexer":
+			time("Yylex", new Variant() {
+				public void run() throws Exception {
+					Reader reader = new FileReader(infile);
+					try {
+						scan(new Yylex(reader, new LineTable(), new NamePool()));
+					} finally {
+						reader.close();
+					}
+				}
+			});
+			time("FastLexer", new Variant() {
+				public void run() throws Exception {
+					scan(new FastLexer(Files.readAllBytes(infile.toPath()),
+						new NamePool()));
+				}
+			});
+			time("TokenStream", new Variant() {
+				public void run() throws Exception {
+					new FastLexer(Files.readAllBytes(infile.toPath()),
+						new NamePool()).tokens();
+				}
+			});
+			time("parallel", new Variant() {
+				public void run() throws Exception {
+					byte[] source = Files.readAllBytes(infile.toPath());
+					ParallelLexer.tokens(new LineTable(source, source.length),
+						new NamePool());
+				}
+			});
+			break;
+		case "input":
+			time("reader", new Variant() {
+				public void run() throws Exception {
+					Reader reader = new FileReader(infile);
+					try {
+						scan(new Yylex(reader, new LineTable(), new NamePool()));
+					} finally {
+						reader.close();
+					}
+				}
+			});
+			time("mapped", new Variant() {
+				public void run() throws Exception {
+					scan(new Yylex(MappedSource.reader(infile.toPath()),
+						new LineTable(), new NamePool()));
+				}
+			});
+			time("bytes", new Variant() {
+				public void run() throws Exception {
+					scan(new FastLexer(Files.readAllBytes(infile.toPath()),
+						new NamePool()));
+				}
+			});
+			time("mapped bytes", new Variant() {
+				public void run() throws Exception {
+					scan(new FastLexer(MappedSource.bytes(infile.toPath()),
+						new NamePool()));
+				}
+			});
+			break;
+		case "tokens":
+			final byte[] source = Files.readAllBytes(infile.toPath());
+			int tokens = new FastLexer(source, new NamePool())
+				.tokens().size();
+			outStream.println("  " + tokens + " tokens");
+			allocation("Yylex", tokens, new Variant() {
+				public void run() throws Exception {
+					Reader reader = new FileReader(infile);
+					try {
+						scan(new Yylex(reader, new LineTable(), new NamePool()));
+					} finally {
+						reader.close();
+					}
+				}
+			});
+			allocation("FastLexer", tokens, new Variant() {
+				public void run() throws Exception {
+					scan(new FastLexer(source, new NamePool()));
+				}
+			});
+			allocation("TokenStream", tokens, new Variant() {
+				public void run() throws Exception {
+					new FastLexer(source, new NamePool()).tokens();
+				}
+			});
+			allocation("+Cursor", tokens, new Variant() {
+				public void run() throws Exception {
+					NamePool names = new NamePool();
+					scan(new FastLexer(source, names).tokens()
+						.cursor(names));
+				}
+			});
+			break;
+		case "relex":
+			final byte[] text = Files.readAllBytes(infile.toPath());
+			int middle = text.length / 2;
+			while (!Character.isLetter(text[middle])) {
+				middle++;
+			}
+			final int at = middle;
+			final byte[] letter = { 'x' };
+			time("full", new Variant() {
+				public void run() throws Exception {
+					NamePool names = new NamePool();
+					byte[] typed = new byte[text.length + 1];
+					System.arraycopy(text, 0, typed, 0, at);
+					typed[at] = letter[0];
+					System.arraycopy(text, at, typed, at + 1, text.length - at);
+					new FastLexer(typed, names).tokens();
+					new FastLexer(text, names).tokens();
+				}
+			});
+			final NamePool names = new NamePool();
+			final TokenStream stream = new FastLexer(text, names).tokens();
+			// an editor asks where the edit is, so the line starts are kept
+			stream.lines().line(at);
+			time("incremental", new Variant() {
+				public void run() throws Exception {
+					IncrementalLexer.edit(stream, at, 0, letter, names);
+					stream.lines().line(at);
+					IncrementalLexer.edit(stream, at, 1, new byte[0], names);
+					stream.lines().line(at);
+				}
+			});
+			break;
+		case "memory":
+			for (int scale = 1; scale <= 8; scale *= 2) {
+				File scaled = File.createTempFile("bench", ".egg");
+				scaled.deleteOnExit();
+				Files.write(scaled.toPath(),
+					program(functions * scale).getBytes());
+				outStream.println("  " + functions * scale + " functions, "
+					+ scaled.length() + " bytes");
+				P6 instance = new P6();
+				compile(instance, scaled, outfile);  // warm up
+				instance = new P6();
+				peakHeap("sequential", instance, scaled, outfile);
+				instance = new P6();
+				instance.setStreaming(true);
+				peakHeap("streaming", instance, scaled, outfile);
+				scaled.delete();
+			}
+			break;
+		case "literals":
+			P6 warm = new P6();
+			compile(warm, infile, outfile);
+			warm = new P6();
+			warm.setFastLexer(true);
+			compile(warm, infile, outfile);
+			peakHeap("Yylex", new P6(), infile, outfile);
+			P6 fast = new P6();
+			fast.setFastLexer(true);
+			peakHeap("FastLexer", fast, infile, outfile);
+			break;
+		case "analysis":
+			time("sequential", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					compile(instance, infile, outfile);
+				}
+			});
+			time("parallel", new Variant() {
+				public void run() throws Exception {
+					P6 instance = new P6();
+					instance.setParallelAnalysis(true);
+					compile(instance, infile, outfile);
+				}
+			});
+			break;
+		default:
+			outStream.println("unknown benchmark " + args[0]);
+			System.exit(P6.RESULT_OTHER_ERROR);
+		}
+	}
+
+	/**
+	 * Times launches of the compiler on test.egg, each in a new JVM.
+	 */
+	static void startup() throws Exception {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java")
+			.toString();
+		final File outfile = File.createTempFile("bench", ".s");
+		outfile.deleteOnExit();
+		outStream.println("startup: test.egg");
+		launches("classpath", outfile,
+			java, "-cp", "./deps:.", "P6");
+		if (!new File("egg.jsa").exists()) {
+			outStream.println("  (no egg.jsa; run make cds for the rest)");
+			return;
+		}
+		launches("jar", outfile,
+			java, "-Xshare:auto", "-jar", "egg.jar");
+		launches("jar+cds", outfile,
+			java, "-XX:SharedArchiveFile=egg.jsa", "-jar", "egg.jar");
+		launches("jar+cds+c1", outfile,
+			java, "-XX:SharedArchiveFile=egg.jsa", "-XX:TieredStopAtLevel=1",
+			"-jar", "egg.jar");
+	}
+
+	private static void launches(String name, final File outfile,
+			String... command) throws Exception {
+		final List<String> args = new ArrayList<String>(Arrays.asList(command));
+		args.add("test.egg");
+		args.add(outfile.getPath());
+		time(name, new Variant() {
+			public void run() throws Exception {
+				Process p = new ProcessBuilder(args).inheritIO().start();
+				if (p.waitFor() != P6.RESULT_CORRECT) {
+					throw new IllegalStateException(args + " failed");
+				}
+			}
+		});
+	}
+
+	private static void scan(java_cup.runtime.Scanner scanner)
+			throws Exception {
+		while (scanner.next_token().sym != sym.EOF) {
+		}
+	}
+
+	private static void compile(P6 instance, File infile, File outfile)
+			throws Exception {
+		instance.setInfile(infile.getPath());
+		instance.setOutfile(outfile.getPath());
+		int resultCode = instance.process();
+		instance.cleanup();
+		if (resultCode != P6.RESULT_CORRECT) {
+			throw new IllegalStateException(P6.resultMessage(resultCode));
+		}
+	}
+
+	/**
+	 * Runs a variant and prints its median time.
+	 */
+	static void time(String name, Variant variant) throws Exception {
+		for (int k = 0; k < WARMUP; k++) {
+			variant.run();
+		}
+		long[] nanos = new long[RUNS];
+		for (int k = 0; k < RUNS; k++) {
+			long start = System.nanoTime();
+			variant.run();
+			nanos[k] = System.nanoTime() - start;
+		}
+		Arrays.sort(nanos);
+		outStream.printf("  %-12s %8.2f ms%n", name, nanos[RUNS / 2] / 1e6);
+	}
+
+	/**
+	 * Runs a variant and prints how many bytes it allocated per token.
+	 */
+	static void allocation(String name, int tokens, Variant variant)
+			throws Exception {
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		for (int k = 0; k < WARMUP; k++) {
+			variant.run();
+		}
+		long before = threads.getCurrentThreadAllocatedBytes();
+		variant.run();
+		long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+		outStream.printf("  %-12s %8.1f bytes/token%n", name,
+			(double)bytes / tokens);
+	}
+
+	/**
+	 * Compiles once and prints the most heap in use after any garbage
+	 * collection during the compile.
+	 */
+	static void peakHeap(String name, P6 instance, File infile, File outfile)
+			throws Exception {
+		final long[] peak = new long[1];
+		NotificationListener listener = new NotificationListener() {
+			public void handleNotification(Notification n, Object handback) {
+				if (!n.getType().equals(GarbageCollectionNotificationInfo
+						.GARBAGE_COLLECTION_NOTIFICATION)) {
+					return;
+				}
+				GarbageCollectionNotificationInfo info =
+					GarbageCollectionNotificationInfo.from(
+						(javax.management.openmbean.CompositeData)n.getUserData());
+				long used = 0;
+				for (MemoryUsage usage :
+						info.getGcInfo().getMemoryUsageAfterGc().values()) {
+					used += usage.getUsed();
+				}
+				synchronized (peak) {
+					peak[0] = Math.max(peak[0], used);
+				}
+			}
+		};
+		System.gc();
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			((NotificationEmitter)gc).addNotificationListener(
+				listener, null, null);
+		}
+		try {
+			compile(instance, infile, outfile);
+			Thread.sleep(100);  // let the last notifications arrive
+		} finally {
+			for (GarbageCollectorMXBean gc :
+					ManagementFactory.getGarbageCollectorMXBeans()) {
+				((NotificationEmitter)gc).removeNotificationListener(listener);
+			}
+		}
+		synchronized (peak) {
+			outStream.printf("    %-12s %8.1f MB%n", name, peak[0] / 1048576.0);
+		}
+	}
+
+	/**
+	 * Returns a correct egg program with the given number of functions,
+	 * each of which writes out twenty long string literals.
+	 */
+	static String literalProgram(int functions) {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < functions; k++) {
+			sb.append("void f" + k + "() {\n");
+			for (int j = 0; j < 20; j++) {
+				sb.append("    cout << \"function " + k + ", line " + j
+					+ ": the quick brown fox jumps over the lazy dog\\n\";\n");
+			}
+			sb.append("}\n");
+		}
+		sb.append("void main() {\n");
+		sb.append("    f0();\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a correct egg program with the given number of functions,
+	 * each of which uses a global and calls the one before it.
+	 */
+	static String program(int functions) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("int total;\n");
+		sb.append("bool done;\n");
+		for (int k = 0; k < functions; k++) {
+			sb.append("int f" + k + "(int a, int b) {\n");
+			sb.append("    int x;\n");
+			sb.append("    int y;\n");
+			sb.append("    x = a + b * " + k + ";\n");
+			sb.append("    y = 0;\n");
+			sb.append("    while (x > 0 && !done) {\n");
+			sb.append("        y = y + x / 2;\n");
+			sb.append("        x--;\n");
+			sb.append("    }\n");
+			sb.append("    if (y == " + k + ") {\n");
+			sb.append("        cout << \"f" + k + "\\n\";\n");
+			sb.append("    } else {\n");
+			if (k > 0) {
+				sb.append("        y = f" + (k - 1) + "(y, x);\n");
+			} else {
+				sb.append("        y = y - 1;\n");
+			}
+			sb.append("    }\n");
+			sb.append("    total = total + y;\n");
+			sb.append("    return y;\n");
+			sb.append("}\n");
+		}
+		sb.append("void main() {\n");
+		sb.append("    total = f" + (functions - 1) + "(1, 2);\n");
+		sb.append("    cout << total;\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+}
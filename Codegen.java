@@ -19,12 +19,12 @@ import java.io.*;
 //     genLabel
 // and a method nextLabel to create and return a new label.
 //
+// Code is written to the output of the compilation bound to the calling
+// thread (see Compilation), which also owns the label counter.
+//
 // **********************************************************************
 
 public class Codegen {
-    // file into which generated code is written
-    public static PrintWriter p = null;    
-
     // values of true and false
     public static final String TRUE = "1";
     public static final String FALSE = "0";
@@ -44,10 +44,6 @@ public class Codegen {
     private static final int MAXLEN = 4;
 
 
-    // for generating labels
-    private static int currLabel = 0;
-
-
     // **********************************************************************
     // **********************************************************************
     // GENERATE OPERATIONS
@@ -61,6 +57,7 @@ public class Codegen {
     // **********************************************************************
     public static void generateWithComment(String opcode, String comment,
                                         String arg1, String arg2, String arg3) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print("\t" + opcode);
@@ -100,6 +97,7 @@ public class Codegen {
     // **********************************************************************
     public static void generate(String opcode, String arg1, String arg2,
                                 String arg3) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print("\t" + opcode);
@@ -135,6 +133,7 @@ public class Codegen {
     // **********************************************************************
     public static void generate(String opcode, String arg1, String arg2,
                                 int arg3) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print("\t" + opcode);
@@ -149,6 +148,7 @@ public class Codegen {
     //    do:     write nicely formatted code (ending with new line)
     // **********************************************************************
     public static void generate(String opcode, String arg1, int arg2) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print("\t" + opcode);
@@ -166,6 +166,7 @@ public class Codegen {
     // **********************************************************************
     public static void generateIndexed(String opcode, String arg1, String arg2,
                                        int arg3, String comment) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print("\t" + opcode);
@@ -189,6 +190,7 @@ public class Codegen {
     // **********************************************************************
     public static void generateLabeled(String label, String opcode,
                                        String comment, String arg1) {
+        PrintWriter p = out(opcode);
         int space = MAXLEN - opcode.length() + 2;
     
         p.print(label + ":");
@@ -208,6 +210,36 @@ public class Codegen {
         generateLabeled(label, opcode, comment, "");
     }
 
+    // **********************************************************************
+    // generateLabeled (arg held in bytes)
+    //    given:  label, op code, and an arg that is buf[offset, offset+length)
+    //    do:     write nicely formatted code (ending with new line), copying
+    //            the arg straight from buf
+    // **********************************************************************
+    public static void generateLabeled(String label, String opcode,
+                                       byte[] buf, int offset, int length) {
+        PrintWriter p = out(opcode);
+        int space = MAXLEN - opcode.length() + 2;
+    
+        p.print(label + ":");
+        p.print("\t" + opcode);
+        for (int k = 1; k <= space; k++) 
+            p.print(" ");
+        write(p, buf, offset, length);
+        p.println();
+    }
+
+    // **********************************************************************
+    // write
+    //    given:  writer and ASCII text that is buf[offset, offset+length)
+    //    do:     write the text
+    // **********************************************************************
+    public static void write(PrintWriter p, byte[] buf, int offset,
+                             int length) {
+        for (int k = offset; k < offset + length; k++)
+            p.write(buf[k] & 0xff);
+    }
+
     // **********************************************************************
     // genPush
     //    generate code to push the given value onto the stack
@@ -232,6 +264,7 @@ public class Codegen {
     //   generate: L:    # comment
     // **********************************************************************
     public static void genLabel(String label, String comment) {
+        PrintWriter p = Compilation.current().out();
         p.print(label + ":");
         if (comment != "") 
             p.print("\t\t" + "# " + comment);
@@ -242,12 +275,26 @@ public class Codegen {
         genLabel(label, "");
     }
     
+    // **********************************************************************
+    // out
+    //    given:  op code about to be written
+    //    do:     count it if it is an instruction (not a directive) and
+    //            return the writer to write it to
+    // **********************************************************************
+    private static PrintWriter out(String opcode) {
+        Compilation comp = Compilation.current();
+        if (!opcode.startsWith(".")) {
+            comp.countInstruction();
+        }
+        return comp.out();
+    }
+
     // **********************************************************************
     // Return a different label each time:
     //        L0 L1 L2, etc.
     // **********************************************************************
     public static String nextLabel() {
-        Integer k = new Integer(currLabel++);
+        Integer k = new Integer(Compilation.current().nextLabelNum());
         String tmp = ".L" + k;
         return(tmp);
     }
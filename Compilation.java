@@ -0,0 +1,279 @@
+import java.io.*;
+import java.util.List;
+
+/**
+ * Compilation
+ *
+ * Holds all of the state that belongs to a single run of the compiler:
+ * the writer that generated code goes to, the label counter, the error
+ * flag, the diagnostics and the stream they are printed to, the line
+ * table of the input, and the optional measurements of the run.
+ *
+ * The static helpers in Codegen and ErrMsg act on the compilation that is
+ * bound to the calling thread (see {@link #enter} and {@link #leave}), so
+ * several compilations can run at the same time on different threads.
+ */
+public class Compilation {
+	private static final ThreadLocal<Compilation> current =
+		new ThreadLocal<Compilation>();
+
+	// file into which generated code is written
+	private PrintWriter out;
+
+	// stream that warning and error messages are written to
+	private PrintStream diagnostics;
+
+	// for generating labels
+	private int currLabel = 0;
+
+	// instructions (not directives) written so far
+	private long instructions = 0;
+
+	// counts for CompilerMetrics, kept here and only added to its
+	// counters by publishMetrics: calls of SymTable.lookupGlobal, the
+	// scopes they looked in, and how many instructions have been added
+	private long lookups = 0;
+	private long scopesWalked = 0;
+	private long publishedInstructions = 0;
+
+	private boolean err = false;
+
+	// warnings and errors waiting to be printed to diagnostics
+	private DiagnosticSink sink = new DiagnosticSink();
+
+	// lines of the input, which positions are offsets into; shared with
+	// the compilations of the phases run apart from this one
+	private LineTable lines = new LineTable();
+
+	// numbers of the identifiers the scanner has seen
+	private NamePool names;
+
+	// measurements, or null if they are not being collected
+	private CompileStats stats;
+
+	// code of functions generated before, or null if it is not kept
+	private FunctionCache functionCache;
+
+	// whether to generate the declarations side by side
+	private boolean parallelCodeGen = false;
+
+	// whether to analyze the function bodies side by side
+	private boolean parallelAnalysis = false;
+
+	/**
+	 * Creates a compilation that reports diagnostics to System.err.
+	 */
+	public Compilation() {
+		this(System.err);
+	}
+
+	/**
+	 * Creates a compilation that reports diagnostics to the given stream.
+	 * @param diagnostics destination for warning and error messages
+	 */
+	public Compilation(PrintStream diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	/**
+	 * Returns the compilation bound to the calling thread. Callers that
+	 * never bound one (e.g. old single-threaded clients) get a fresh
+	 * compilation that stays bound to the thread from then on.
+	 */
+	public static Compilation current() {
+		Compilation comp = current.get();
+		if (comp == null) {
+			comp = new Compilation();
+			current.set(comp);
+		}
+		return comp;
+	}
+
+	/**
+	 * Binds the given compilation to the calling thread.
+	 * @param comp compilation to bind
+	 * @return the compilation that was bound before, to pass to
+	 *         {@link #leave} when done
+	 */
+	public static Compilation enter(Compilation comp) {
+		Compilation prev = current.get();
+		current.set(comp);
+		return prev;
+	}
+
+	/**
+	 * Restores the binding that was in place before {@link #enter}.
+	 * @param prev value returned by the matching call to enter
+	 */
+	public static void leave(Compilation prev) {
+		if (prev == null) {
+			current.remove();
+		} else {
+			current.set(prev);
+		}
+	}
+
+	public PrintWriter out() {
+		return out;
+	}
+
+	public void setOut(PrintWriter out) {
+		this.out = out;
+	}
+
+	public PrintStream diagnostics() {
+		return diagnostics;
+	}
+
+	public void setDiagnostics(PrintStream diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	/**
+	 * Returns a new label number each time: 0, 1, 2, etc.
+	 */
+	public int nextLabelNum() {
+		return currLabel++;
+	}
+
+	/**
+	 * Takes n label numbers at once, for code that numbers its own.
+	 * @return the first of them
+	 */
+	public int reserveLabels(int n) {
+		int first = currLabel;
+		currLabel += n;
+		return first;
+	}
+
+	/**
+	 * Records that an instruction has been written to the output.
+	 */
+	public void countInstruction() {
+		countInstructions(1);
+	}
+
+	public void countInstructions(long n) {
+		instructions += n;
+		if (stats != null) {
+			stats.instructions.add(n);
+		}
+	}
+
+	public long instructionCount() {
+		return instructions;
+	}
+
+	/**
+	 * Records a call of SymTable.lookupGlobal.
+	 * @param scopes number of scopes it looked in
+	 */
+	void countLookup(int scopes) {
+		lookups++;
+		scopesWalked += scopes;
+	}
+
+	/**
+	 * Adds what has been counted since the last call to the counters of
+	 * the JVM (see CompilerMetrics). Called once this compilation, or the
+	 * phase it was made for, is done.
+	 */
+	void publishMetrics() {
+		CompilerMetrics metrics = CompilerMetrics.get();
+		metrics.lookups(lookups, scopesWalked);
+		metrics.instructions(instructions - publishedInstructions);
+		lookups = 0;
+		scopesWalked = 0;
+		publishedInstructions = instructions;
+	}
+
+	/**
+	 * Records a warning or error, to be printed to the diagnostic stream
+	 * by {@link #flushDiagnostics}. An error also sets the error flag.
+	 * @throws TooManyErrorsException if the error limit has been reached
+	 */
+	public void report(Diagnostic diagnostic) {
+		if (diagnostic.severity() == Diagnostic.Severity.ERROR) {
+			err = true;
+		}
+		sink.report(diagnostic);
+	}
+
+	public List<Diagnostic> reported() {
+		return sink.reported();
+	}
+
+	public void flushDiagnostics() {
+		sink.flush(diagnostics);
+	}
+
+	/**
+	 * @param maxErrors number of errors after which to stop compiling, or
+	 *                  0 for no limit
+	 */
+	public void setMaxErrors(int maxErrors) {
+		sink.setMaxErrors(maxErrors);
+	}
+
+	public int maxErrors() {
+		return sink.maxErrors();
+	}
+
+	public void setErr() {
+		err = true;
+	}
+
+	public boolean hasErrors() {
+		return err;
+	}
+
+	public LineTable lines() {
+		return lines;
+	}
+
+	public void setLines(LineTable lines) {
+		this.lines = lines;
+	}
+
+	/**
+	 * Returns the identifiers of the compilation, created on first use.
+	 */
+	public NamePool names() {
+		if (names == null) {
+			names = new NamePool();
+		}
+		return names;
+	}
+
+	public CompileStats stats() {
+		return stats;
+	}
+
+	public void setStats(CompileStats stats) {
+		this.stats = stats;
+	}
+
+	public FunctionCache functionCache() {
+		return functionCache;
+	}
+
+	public void setFunctionCache(FunctionCache functionCache) {
+		this.functionCache = functionCache;
+	}
+
+	public boolean parallelCodeGen() {
+		return parallelCodeGen;
+	}
+
+	public void setParallelCodeGen(boolean parallelCodeGen) {
+		this.parallelCodeGen = parallelCodeGen;
+	}
+
+	public boolean parallelAnalysis() {
+		return parallelAnalysis;
+	}
+
+	public void setParallelAnalysis(boolean parallelAnalysis) {
+		this.parallelAnalysis = parallelAnalysis;
+	}
+}
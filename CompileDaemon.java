@@ -0,0 +1,299 @@
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.concurrent.*;
+
+/**
+ * CompileDaemon
+ *
+ * A long-lived compiler that takes requests over a Unix domain socket, so
+ * that repeated compiles run in a warm JVM. The command lines are
+ *
+ *    P6 --daemon <socket>
+ *    P6 --client <socket> <infile> <outfile>
+ *
+ * where an infile of "-" makes the client send the source it reads from
+ * stdin instead of a path.
+ *
+ * One request is made per connection. The request is a single header line
+ * with tab-separated fields, which is one of
+ *
+ *    PATH   <infile> <outfile>
+ *    SOURCE <outfile> <length>     (followed by <length> bytes of source,
+ *                                  at most MAX_SOURCE)
+ *
+ * The header may be at most MAX_HEADER bytes, and the whole request must
+ * arrive within REQUEST_TIMEOUT_SECONDS, or the connection is closed.
+ * Only the user running the daemon may connect to its socket, and the
+ * daemon will not start over a file that is not a stale socket.
+ *
+ * The response is a line holding the P6.RESULT_* code, followed by the
+ * warning and error messages of the compile. Paths are used as given, so
+ * the client sends absolute ones.
+ */
+public class CompileDaemon {
+	// the longest source a SOURCE request may send
+	static final int MAX_SOURCE = 64 * 1024 * 1024;
+	// the longest header line, newline not counted
+	static final int MAX_HEADER = 8 * 1024;
+	// how long a client has to send its request
+	static final int REQUEST_TIMEOUT_SECONDS = 30;
+
+	private Path socketPath;
+	private PrintStream outStream = System.err;
+
+	// shared by all requests, so a changed file only regenerates the
+	// functions that changed
+	private FunctionCache functionCache = new FunctionCache(null);
+
+	// closes the connections whose requests take too long to arrive
+	private ScheduledExecutorService deadlines =
+		Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "request-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	/**
+	 * @param socketPath path of the socket file to listen on
+	 */
+	public CompileDaemon(Path socketPath) {
+		this.socketPath = socketPath;
+	}
+
+	/**
+	 * Accepts and answers requests until the process is stopped.
+	 */
+	public void serve() throws IOException {
+		CompilerMetrics.register();
+		removeStaleSocket();
+		ServerSocketChannel server = bindPrivate();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				try {
+					Files.deleteIfExists(socketPath);
+				} catch (IOException e) {
+					// nothing left to do about it
+				}
+			}
+		});
+
+		ExecutorService workers = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors());
+		outStream.println("listening on " + socketPath);
+		while (true) {
+			final SocketChannel client = server.accept();
+			workers.execute(new Runnable() {
+				public void run() {
+					try {
+						answer(client);
+					} catch (IOException e) {
+						outStream.println("request failed: " + e.getMessage());
+					} finally {
+						try {
+							client.close();
+						} catch (IOException e) {
+							// the client has gone away already
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Deletes the socket file of a daemon that is no longer running, and
+	 * refuses to start if the path is anything else.
+	 */
+	private void removeStaleSocket() throws IOException {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(socketPath, BasicFileAttributes.class,
+				LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		if (!attrs.isOther()) {
+			throw new IOException(socketPath + " exists and is not a socket");
+		}
+		try {
+			SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+		} catch (IOException e) {
+			// nothing is listening on it, so it is left over from an old daemon
+			Files.delete(socketPath);
+			return;
+		}
+		throw new IOException("a daemon is already listening on " + socketPath);
+	}
+
+	/**
+	 * Binds the socket inside a directory only the owner may enter, makes
+	 * it accessible to the owner only, and only then moves it to the
+	 * socket path, so no other user can connect at any time.
+	 */
+	private ServerSocketChannel bindPrivate() throws IOException {
+		Path parent = socketPath.toAbsolutePath().getParent();
+		Path dir = Files.createTempDirectory(parent, ".egg-daemon",
+			PosixFilePermissions.asFileAttribute(
+				PosixFilePermissions.fromString("rwx------")));
+		Path bound = dir.resolve("socket");
+		ServerSocketChannel server =
+			ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			server.bind(UnixDomainSocketAddress.of(bound));
+			Files.setPosixFilePermissions(bound,
+				PosixFilePermissions.fromString("rw-------"));
+			Files.move(bound, socketPath, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			server.close();
+			throw e;
+		} finally {
+			Files.deleteIfExists(bound);
+			Files.delete(dir);
+		}
+		return server;
+	}
+
+	/**
+	 * Reads one request from the channel, compiles it, and writes the
+	 * response.
+	 */
+	void answer(final SocketChannel client) throws IOException {
+		// a read blocked past the deadline fails once the channel is closed
+		ScheduledFuture<?> deadline = deadlines.schedule(new Runnable() {
+			public void run() {
+				try {
+					client.close();
+				} catch (IOException e) {
+					// the client has gone away already
+				}
+			}
+		}, REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		DataInputStream in = new DataInputStream(
+			new BufferedInputStream(Channels.newInputStream(client)));
+		ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+		P6 instance = new P6(new PrintStream(diagnostics, true));
+		instance.setFunctionCache(functionCache);
+		int resultCode;
+		try {
+			String[] header = readLine(in).split("\t");
+			if (header[0].equals("PATH") && header.length == 3) {
+				instance.setInfile(header[1]);
+				instance.setOutfile(header[2]);
+			} else if (header[0].equals("SOURCE") && header.length == 3) {
+				byte[] source = new byte[sourceLength(header[2])];
+				in.readFully(source);
+				instance.setInput(new InputStreamReader(
+					new ByteArrayInputStream(source), StandardCharsets.UTF_8));
+				instance.setOutfile(header[1]);
+			} else {
+				throw new IOException("bad request header: " + header[0]);
+			}
+			deadline.cancel(false);
+			resultCode = instance.process();
+		} catch (Exception e) {
+			// a bad request, or one of the files could not be opened
+			new PrintStream(diagnostics, true).println(e.getMessage());
+			resultCode = P6.RESULT_OTHER_ERROR;
+		} catch (Throwable e) {
+			// the compiler itself failed, say on a deeply nested input
+			new PrintStream(diagnostics, true).println("unexpected " + e);
+			resultCode = P6.RESULT_OTHER_ERROR;
+		} finally {
+			deadline.cancel(false);
+			instance.cleanup();
+		}
+
+		OutputStream out = Channels.newOutputStream(client);
+		out.write((resultCode + "\n").getBytes(StandardCharsets.UTF_8));
+		diagnostics.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Sends one request to a running daemon and prints its answer the
+	 * way P6 itself would.
+	 * @param args command line args array for [<socket> <infile> <outfile>]
+	 * @return the exit status for the client
+	 */
+	public static int client(String[] args) throws IOException {
+		if (args.length < 3) {
+			throw new IllegalArgumentException("please supply the daemon's "
+				+ "socket, the input file (or -) and the output file.");
+		}
+
+		String outfile = new File(args[2]).getAbsolutePath();
+		SocketChannel channel = SocketChannel.open(
+			UnixDomainSocketAddress.of(Paths.get(args[0])));
+		try {
+			OutputStream out = Channels.newOutputStream(channel);
+			if (args[1].equals("-")) {
+				byte[] source = System.in.readAllBytes();
+				out.write(("SOURCE\t" + outfile + "\t" + source.length + "\n")
+					.getBytes(StandardCharsets.UTF_8));
+				out.write(source);
+			} else {
+				String infile = new File(args[1]).getAbsolutePath();
+				out.write(("PATH\t" + infile + "\t" + outfile + "\n")
+					.getBytes(StandardCharsets.UTF_8));
+			}
+			out.flush();
+
+			DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Channels.newInputStream(channel)));
+			int resultCode = Integer.parseInt(readLine(in).trim());
+			in.transferTo(System.err);
+			if (resultCode != P6.RESULT_CORRECT) {
+				System.err.println(P6.resultMessage(resultCode));
+				return P6.RESULT_OTHER_ERROR;
+			}
+			return P6.RESULT_CORRECT;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Parses the length field of a SOURCE request, which the client sends
+	 * and so may be anything.
+	 */
+	private static int sourceLength(String field) throws IOException {
+		int length;
+		try {
+			length = Integer.parseInt(field);
+		} catch (NumberFormatException e) {
+			throw new IOException("bad source length: " + field);
+		}
+		if (length < 0 || length > MAX_SOURCE) {
+			throw new IOException("source length " + length
+				+ " is not between 0 and " + MAX_SOURCE);
+		}
+		return length;
+	}
+
+	/**
+	 * Reads bytes up to the next newline, which is dropped. The line may
+	 * be at most MAX_HEADER bytes long.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != '\n') {
+			if (c == -1) {
+				throw new EOFException("connection closed mid-line");
+			}
+			if (line.size() == MAX_HEADER) {
+				throw new IOException("line longer than " + MAX_HEADER
+					+ " bytes");
+			}
+			line.write(c);
+		}
+		return line.toString(StandardCharsets.UTF_8);
+	}
+}
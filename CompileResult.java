@@ -0,0 +1,50 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CompileResult
+ *
+ * What {@link P6#compile(CharSequence)} produces: the result code, the
+ * generated code, and the warnings and errors in the order they were
+ * reported.
+ */
+public class CompileResult {
+	private final int resultCode;
+	private final String assembly;
+	private final List<Diagnostic> diagnostics;
+
+	public CompileResult(int resultCode, String assembly,
+			List<Diagnostic> diagnostics) {
+		this.resultCode = resultCode;
+		this.assembly = assembly;
+		this.diagnostics = Collections.unmodifiableList(
+			new ArrayList<Diagnostic>(diagnostics));
+	}
+
+	/**
+	 * Returns one of the P6.RESULT_* codes.
+	 */
+	public int resultCode() {
+		return resultCode;
+	}
+
+	public boolean succeeded() {
+		return resultCode == P6.RESULT_CORRECT;
+	}
+
+	/**
+	 * Returns the generated MIPS code. It is only complete if the compile
+	 * succeeded.
+	 */
+	public CharSequence assembly() {
+		return assembly;
+	}
+
+	public byte[] assemblyBytes() {
+		return assembly.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public List<Diagnostic> diagnostics() {
+		return diagnostics;
+	}
+}
@@ -0,0 +1,312 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * CompileServer
+ *
+ * Serves the compiler over HTTP on the loopback interface. The command
+ * lines are
+ *
+ *    P6 --serve <port>
+ *    P6 --load <port> <infile> <requests> <concurrency>
+ *
+ * the second being a load generator that posts <infile> <requests> times
+ * from <concurrency> threads and reports the throughput and latencies.
+ *
+ * The endpoints are
+ *    POST /compile   the body is egg source; the response is a JSON
+ *                    object with the result code and message, the
+ *                    generated code, and the diagnostics
+ *    GET  /metrics   counters, the number of requests waiting for a
+ *                    compile slot, and a histogram of request latencies,
+ *                    in the Prometheus text format
+ *
+ * Each request runs on a thread of its own: a virtual thread when the
+ * JVM has them, a pooled platform thread otherwise. At most one compile
+ * per core runs at a time; the rest wait in the queue. Requests for the
+ * same source that arrive while it is being compiled share that compile.
+ * A source longer than MAX_SOURCE is refused with 413.
+ */
+public class CompileServer {
+	// the longest source a compile request may post
+	static final int MAX_SOURCE = 64 * 1024 * 1024;
+
+	// upper bounds of the latency histogram buckets, in milliseconds
+	private static final long[] BUCKETS =
+		{ 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private int port;
+	private PrintStream outStream = System.err;
+
+	private Semaphore slots =
+		new Semaphore(Runtime.getRuntime().availableProcessors());
+	private ConcurrentHashMap<String, CompletableFuture<CompileResult>> running =
+		new ConcurrentHashMap<String, CompletableFuture<CompileResult>>();
+
+	private AtomicInteger queued = new AtomicInteger();
+	private LongAdder requests = new LongAdder();
+	private LongAdder compiles = new LongAdder();
+	private LongAdder coalesced = new LongAdder();
+	private AtomicLongArray latencies = new AtomicLongArray(BUCKETS.length + 1);
+	private LongAdder latencyMillis = new LongAdder();
+
+	/**
+	 * @param port port to listen on
+	 */
+	public CompileServer(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Starts serving; the server runs until the process is stopped.
+	 */
+	public void serve() throws IOException {
+		CompilerMetrics.register();
+		HttpServer server = HttpServer.create(
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(requestExecutor());
+		server.createContext("/compile", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				compile(exchange);
+			}
+		});
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				metrics(exchange);
+			}
+		});
+		server.start();
+		outStream.println("serving on http://localhost:"
+			+ server.getAddress().getPort() + "/compile");
+	}
+
+	/**
+	 * Returns an executor that starts a virtual thread per task if the JVM
+	 * has them (Java 21 on), or else one that runs each task on a cached
+	 * platform thread.
+	 */
+	static ExecutorService requestExecutor() {
+		try {
+			Method virtual =
+				Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)virtual.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	private void compile(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		requests.increment();
+		try {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				send(exchange, 405, "text/plain", "POST egg source to /compile\n");
+				return;
+			}
+			byte[] body = readSource(exchange);
+			if (body == null) {
+				send(exchange, 413, "text/plain", "source longer than "
+					+ MAX_SOURCE + " bytes\n");
+				return;
+			}
+			String source = new String(body, StandardCharsets.UTF_8);
+			CompileResult result;
+			try {
+				result = compileShared(source);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				send(exchange, 503, "text/plain", "interrupted\n");
+				return;
+			} catch (ExecutionException ex) {
+				send(exchange, 500, "text/plain",
+					"unexpected " + ex.getCause() + "\n");
+				return;
+			}
+			send(exchange, 200, "application/json", toJson(result));
+		} finally {
+			exchange.close();
+			record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+	}
+
+	/**
+	 * Reads the body of a compile request, reading no more than one byte
+	 * past the longest source allowed.
+	 * @return the body, or null if it is longer than that
+	 */
+	private static byte[] readSource(HttpExchange exchange) throws IOException {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (length != null) {
+			try {
+				if (Long.parseLong(length.trim()) > MAX_SOURCE) {
+					return null;
+				}
+			} catch (NumberFormatException ex) {
+				// the read below still bounds it
+			}
+		}
+		byte[] body =
+			exchange.getRequestBody().readNBytes(MAX_SOURCE + 1);
+		return body.length > MAX_SOURCE ? null : body;
+	}
+
+	/**
+	 * Compiles the source, or waits for the compile of the same source
+	 * that is already running.
+	 */
+	private CompileResult compileShared(String source)
+			throws InterruptedException, ExecutionException {
+		String key = OutputCache.key(source);
+		CompletableFuture<CompileResult> mine =
+			new CompletableFuture<CompileResult>();
+		CompletableFuture<CompileResult> theirs = running.putIfAbsent(key, mine);
+		if (theirs != null) {
+			coalesced.increment();
+			return theirs.get();
+		}
+
+		try {
+			queued.incrementAndGet();
+			try {
+				slots.acquire();
+			} finally {
+				queued.decrementAndGet();
+			}
+			try {
+				compiles.increment();
+				mine.complete(P6.compile(source));
+			} finally {
+				slots.release();
+			}
+		} catch (Throwable t) {
+			mine.completeExceptionally(t);
+		} finally {
+			running.remove(key);
+		}
+		return mine.get();
+	}
+
+	private void record(long millis) {
+		int bucket = 0;
+		while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+			bucket++;
+		}
+		latencies.incrementAndGet(bucket);
+		latencyMillis.add(millis);
+	}
+
+	private void metrics(HttpExchange exchange) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("egg_requests_total " + requests.sum() + "\n");
+		sb.append("egg_compiles_total " + compiles.sum() + "\n");
+		sb.append("egg_coalesced_total " + coalesced.sum() + "\n");
+		sb.append("egg_queue_depth " + queued.get() + "\n");
+		long count = 0;
+		for (int k = 0; k <= BUCKETS.length; k++) {
+			count += latencies.get(k);
+			String le = k < BUCKETS.length ? Long.toString(BUCKETS[k]) : "+Inf";
+			sb.append("egg_request_latency_ms_bucket{le=\"" + le + "\"} "
+				+ count + "\n");
+		}
+		sb.append("egg_request_latency_ms_sum " + latencyMillis.sum() + "\n");
+		sb.append("egg_request_latency_ms_count " + count + "\n");
+		send(exchange, 200, "text/plain; version=0.0.4", sb.toString());
+		exchange.close();
+	}
+
+	private static String toJson(CompileResult result) {
+		StringBuilder sb = new StringBuilder("{");
+		sb.append("\"result\": " + result.resultCode());
+		sb.append(", \"message\": "
+			+ CompileStats.quote(P6.resultMessage(result.resultCode())));
+		sb.append(", \"assembly\": "
+			+ CompileStats.quote(result.assembly().toString()));
+		sb.append(", \"diagnostics\": [");
+		for (int k = 0; k < result.diagnostics().size(); k++) {
+			Diagnostic d = result.diagnostics().get(k);
+			sb.append(k > 0 ? ", " : "");
+			sb.append("{\"line\": " + d.line() + ", \"column\": " + d.column()
+				+ ", \"severity\": \"" + d.severity() + "\", \"message\": "
+				+ CompileStats.quote(d.message()) + "}");
+		}
+		return sb.append("]}\n").toString();
+	}
+
+	private static void send(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	/**
+	 * Posts a file to a running server many times and reports on it.
+	 * @param args command line args array for
+	 *             [<port> <infile> <requests> <concurrency>]
+	 * @return the exit status for the load generator
+	 */
+	public static int load(String[] args) throws Exception {
+		if (args.length < 4) {
+			throw new IllegalArgumentException("please supply the server's "
+				+ "port, the input file, the number of requests and the "
+				+ "number of threads.");
+		}
+		final URI uri = URI.create("http://localhost:" + args[0] + "/compile");
+		final byte[] source = Files.readAllBytes(Paths.get(args[1]));
+		int total = Integer.parseInt(args[2]);
+		int threads = Integer.parseInt(args[3]);
+
+		final HttpClient client = HttpClient.newHttpClient();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> sent = new ArrayList<Future<Long>>();
+		long start = System.nanoTime();
+		for (int k = 0; k < total; k++) {
+			sent.add(pool.submit(new Callable<Long>() {
+				public Long call() throws Exception {
+					long t = System.nanoTime();
+					HttpResponse<String> response = client.send(
+						HttpRequest.newBuilder(uri)
+							.POST(HttpRequest.BodyPublishers.ofByteArray(source))
+							.build(),
+						HttpResponse.BodyHandlers.ofString());
+					if (response.statusCode() != 200) {
+						throw new IOException("status " + response.statusCode());
+					}
+					return System.nanoTime() - t;
+				}
+			}));
+		}
+		List<Long> nanos = new ArrayList<Long>();
+		int failed = 0;
+		for (Future<Long> request : sent) {
+			try {
+				nanos.add(request.get());
+			} catch (ExecutionException ex) {
+				failed++;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		pool.shutdown();
+
+		System.out.printf("%d requests (%d failed) in %.2f s: %.1f requests/s%n",
+			total, failed, seconds, total / seconds);
+		if (!nanos.isEmpty()) {
+			Collections.sort(nanos);
+			int n = nanos.size();
+			System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f%n",
+				nanos.get(n / 2) / 1e6, nanos.get(n * 9 / 10) / 1e6,
+				nanos.get(n * 99 / 100) / 1e6, nanos.get(n - 1) / 1e6);
+		}
+		return failed == 0 ? P6.RESULT_CORRECT : P6.RESULT_OTHER_ERROR;
+	}
+}
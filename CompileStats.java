@@ -0,0 +1,210 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CompileStats
+ *
+ * Measurements taken during one compilation: the wall time, CPU time and
+ * allocated bytes of each phase, and counts of the tokens scanned, AST
+ * nodes built, symbols declared and instructions emitted. A compilation
+ * only collects them when it has a CompileStats (see Compilation.stats).
+ *
+ * The CPU time and allocation of a phase include the work done for it on
+ * other threads, by the modes that hand work to a pool (see Work). A
+ * compilation whose result came from the cache is marked as cached, and
+ * only has the phase that looked it up.
+ */
+public class CompileStats {
+	private static final ThreadMXBean threads =
+		ManagementFactory.getThreadMXBean();
+
+	public final LongAdder tokens = new LongAdder();
+	public final LongAdder astNodes = new LongAdder();
+	public final LongAdder symbols = new LongAdder();
+	public final LongAdder instructions = new LongAdder();
+
+	private List<Phase> phases = new ArrayList<Phase>();
+
+	// the phase each thread is in, so work it hands to other threads can
+	// be charged to that phase
+	private final ThreadLocal<Phase> current = new ThreadLocal<Phase>();
+
+	private volatile boolean cached = false;
+
+	/**
+	 * The measurements of one phase. They are taken on the thread that
+	 * starts and ends the phase, and the Work done for it on other
+	 * threads is added to them.
+	 */
+	public class Phase {
+		String name;
+		long wallNanos;
+		long cpuNanos;
+		long allocatedBytes;
+
+		private Thread thread = Thread.currentThread();
+		private Phase outer = current.get();
+		private LongAdder otherCpuNanos = new LongAdder();
+		private LongAdder otherAllocatedBytes = new LongAdder();
+
+		Phase(String name) {
+			this.name = name;
+			wallNanos = System.nanoTime();
+			cpuNanos = cpuTime();
+			allocatedBytes = allocatedBytes();
+			current.set(this);
+		}
+
+		/**
+		 * Ends the phase and records it. The work done for it on other
+		 * threads must have ended.
+		 */
+		public void end() {
+			wallNanos = System.nanoTime() - wallNanos;
+			cpuNanos = cpuTime() - cpuNanos + otherCpuNanos.sum();
+			allocatedBytes = allocatedBytes() - allocatedBytes
+				+ otherAllocatedBytes.sum();
+			current.set(outer);
+			synchronized (phases) {
+				phases.add(this);
+			}
+		}
+	}
+
+	/**
+	 * Some of the work of the phase that the thread creating it is in,
+	 * which may be run on another thread. Only when it is are its
+	 * measurements added to the phase, since the phase's own thread is
+	 * measured already.
+	 */
+	public class Work {
+		private Phase phase = current.get();
+		private boolean measuring;
+		private long cpuNanos;
+		private long allocatedBytes;
+
+		/**
+		 * Starts measuring, on the thread that runs the work.
+		 */
+		public void begin() {
+			measuring = phase != null && Thread.currentThread() != phase.thread;
+			if (measuring) {
+				cpuNanos = cpuTime();
+				allocatedBytes = allocatedBytes();
+			}
+		}
+
+		/**
+		 * Ends the measurement started by begin, on the same thread.
+		 */
+		public void end() {
+			if (measuring) {
+				phase.otherCpuNanos.add(cpuTime() - cpuNanos);
+				phase.otherAllocatedBytes.add(allocatedBytes() - allocatedBytes);
+			}
+		}
+	}
+
+	/**
+	 * Starts measuring a phase; call end on the result when it is done.
+	 * @param name name of the phase in the report
+	 */
+	public Phase startPhase(String name) {
+		return new Phase(name);
+	}
+
+	/**
+	 * Returns a Work for the phase the calling thread is in.
+	 */
+	public Work work() {
+		return new Work();
+	}
+
+	/**
+	 * Marks the compilation as one whose result came from the cache.
+	 */
+	public void setCached() {
+		cached = true;
+	}
+
+	/**
+	 * Wraps a scanner so that the tokens it returns are counted.
+	 */
+	public java_cup.runtime.Scanner countTokens(
+			final java_cup.runtime.Scanner scanner) {
+		return new java_cup.runtime.Scanner() {
+			public java_cup.runtime.Symbol next_token() throws Exception {
+				java_cup.runtime.Symbol token = scanner.next_token();
+				if (token.sym != sym.EOF) {
+					tokens.increment();
+				}
+				return token;
+			}
+		};
+	}
+
+	private static long cpuTime() {
+		return threads.isCurrentThreadCpuTimeSupported()
+			? threads.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)threads)
+				.getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the report as a JSON object.
+	 * @param p destination of the report
+	 * @param infile name of the compiled file
+	 * @param resultCode P6.RESULT_* code of the compilation
+	 */
+	public void writeJson(PrintWriter p, String infile, int resultCode) {
+		p.println("{");
+		p.println("  \"file\": " + quote(infile) + ",");
+		p.println("  \"result\": " + resultCode + ",");
+		p.println("  \"cached\": " + cached + ",");
+		p.println("  \"phases\": [");
+		synchronized (phases) {
+			for (int k = 0; k < phases.size(); k++) {
+				Phase phase = phases.get(k);
+				p.print("    {\"name\": " + quote(phase.name)
+					+ ", \"wallNanos\": " + phase.wallNanos
+					+ ", \"cpuNanos\": " + phase.cpuNanos
+					+ ", \"allocatedBytes\": " + phase.allocatedBytes + "}");
+				p.println(k + 1 < phases.size() ? "," : "");
+			}
+		}
+		p.println("  ],");
+		p.println("  \"counts\": {");
+		p.println("    \"tokens\": " + tokens.sum() + ",");
+		p.println("    \"astNodes\": " + astNodes.sum() + ",");
+		p.println("    \"symbols\": " + symbols.sum() + ",");
+		p.println("    \"instructions\": " + instructions.sum());
+		p.println("  }");
+		p.println("}");
+	}
+
+	/**
+	 * Returns s as a JSON string literal.
+	 */
+	static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int k = 0; k < s.length(); k++) {
+			char c = s.charAt(k);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < ' ') {
+				sb.append(String.format("\\u%04x", (int)c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -0,0 +1,69 @@
+import jdk.jfr.*;
+
+/**
+ * CompilerEvents
+ *
+ * Java Flight Recorder events for the compiler, so that a recording shows
+ * where compile time goes:
+ *     Phase           one phase of P6.process for one input file
+ *     FunctionCodeGen code generation for one function
+ *     ScopeBurst      the symbol-table scopes pushed and popped while
+ *                     name analysis walks the body of one function
+ * No event is created until Flight Recorder has been started (see
+ * recording), so a short compile does not load the recorder's classes;
+ * after that they cost next to nothing while no recording is running.
+ */
+public class CompilerEvents {
+	private CompilerEvents() {
+	}
+
+	/**
+	 * Whether Flight Recorder has been started in this JVM, either on the
+	 * command line or later on, through jcmd or the API.
+	 */
+	static boolean recording() {
+		return FlightRecorder.isInitialized();
+	}
+
+	@Name("egg.Phase")
+	@Label("Compiler Phase")
+	@Category("Egg Compiler")
+	@Description("One phase of compiling an egg file")
+	static class Phase extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("File")
+		String file;
+	}
+
+	@Name("egg.FunctionCodeGen")
+	@Label("Function Code Generation")
+	@Category("Egg Compiler")
+	@Description("Code generation for one egg function")
+	static class FunctionCodeGen extends Event {
+		@Label("Function")
+		String function;
+
+		@Label("Instructions")
+		long instructions;
+	}
+
+	@Name("egg.ScopeBurst")
+	@Label("Symbol Table Scope Burst")
+	@Category("Egg Compiler")
+	@Description("Scopes pushed and popped during name analysis of one function body")
+	static class ScopeBurst extends Event {
+		@Label("Function")
+		String function;
+
+		@Label("Pushes")
+		int pushes;
+
+		@Label("Pops")
+		int pops;
+
+		@Label("Maximum Depth")
+		int maxDepth;
+	}
+}
@@ -0,0 +1,175 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.*;
+
+/**
+ * CompilerMetrics
+ *
+ * Counters kept across every compilation in the JVM, for watching a
+ * compiler that runs for a long time (embedded, or as a daemon or
+ * server). They are only visible over JMX, as egg:type=CompilerMetrics,
+ * once {@link register} has been called, which the in-memory API and the
+ * long-running modes do.
+ *
+ * So that a one-shot compile pays next to nothing for them, the hot
+ * paths do not touch these counters: symbol lookups and instructions are
+ * counted in plain fields of each Compilation and added here when it is
+ * done (see Compilation.publishMetrics), and tokens are only counted
+ * once the counters have been registered.
+ */
+public class CompilerMetrics implements CompilerMetricsMXBean {
+	public static final String NAME = "egg:type=CompilerMetrics";
+
+	// the phases during which the scanner runs
+	private static final Set<String> SCANNING_PHASES =
+		new HashSet<String>(Arrays.asList("parse", "stream"));
+
+	private static final CompilerMetrics metrics = new CompilerMetrics();
+	private static volatile boolean registered = false;
+
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final ConcurrentHashMap<String, LongAdder> phaseNanos =
+		new ConcurrentHashMap<String, LongAdder>();
+	private final LongAdder tokens = new LongAdder();
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder scopesWalked = new LongAdder();
+	private final LongAdder instructions = new LongAdder();
+
+	private CompilerMetrics() {
+	}
+
+	/**
+	 * Returns the counters of this JVM.
+	 */
+	public static CompilerMetrics get() {
+		return metrics;
+	}
+
+	/**
+	 * Registers the counters with the platform MBean server, if they are
+	 * not there already.
+	 */
+	public static synchronized void register() {
+		if (!registered) {
+			Registration.register();
+			registered = true;
+		}
+	}
+
+	/**
+	 * Whether the counters have been registered, and so may be read.
+	 */
+	static boolean registered() {
+		return registered;
+	}
+
+	/**
+	 * Kept apart so that the JMX classes are only loaded by register.
+	 */
+	private static class Registration {
+		static void register() {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+					metrics, new ObjectName(NAME));
+			} catch (InstanceAlreadyExistsException e) {
+				// another class loader got there first
+			} catch (JMException e) {
+				throw new IllegalStateException("Could not register " + NAME, e);
+			}
+		}
+	}
+
+	/**
+	 * Records the end of a compilation.
+	 * @param succeeded whether it ended with P6.RESULT_CORRECT
+	 */
+	void compiled(boolean succeeded) {
+		(succeeded ? completed : failed).increment();
+	}
+
+	void phase(String name, long nanos) {
+		LongAdder total = phaseNanos.get(name);
+		if (total == null) {
+			phaseNanos.putIfAbsent(name, new LongAdder());
+			total = phaseNanos.get(name);
+		}
+		total.add(nanos);
+	}
+
+	/**
+	 * Wraps a scanner so that the tokens it returns are counted.
+	 */
+	java_cup.runtime.Scanner countTokens(
+			final java_cup.runtime.Scanner scanner) {
+		return new java_cup.runtime.Scanner() {
+			public java_cup.runtime.Symbol next_token() throws Exception {
+				java_cup.runtime.Symbol token = scanner.next_token();
+				if (token.sym != sym.EOF) {
+					tokens.increment();
+				}
+				return token;
+			}
+		};
+	}
+
+	/**
+	 * Records calls of SymTable.lookupGlobal.
+	 * @param n number of calls
+	 * @param scopes number of scopes they looked in, all told
+	 */
+	void lookups(long n, long scopes) {
+		lookups.add(n);
+		scopesWalked.add(scopes);
+	}
+
+	void instructions(long n) {
+		instructions.add(n);
+	}
+
+	public long getCompilationsCompleted() {
+		return completed.sum();
+	}
+
+	public long getCompilationsFailed() {
+		return failed.sum();
+	}
+
+	public Map<String, Long> getPhaseMillis() {
+		Map<String, Long> millis = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> e : phaseNanos.entrySet()) {
+			millis.put(e.getKey(),
+				TimeUnit.NANOSECONDS.toMillis(e.getValue().sum()));
+		}
+		return millis;
+	}
+
+	public long getTokens() {
+		return tokens.sum();
+	}
+
+	public double getTokensPerSecond() {
+		long nanos = 0;
+		for (String name : SCANNING_PHASES) {
+			LongAdder total = phaseNanos.get(name);
+			nanos += total == null ? 0 : total.sum();
+		}
+		return nanos == 0 ? 0 : tokens.sum() * 1e9 / nanos;
+	}
+
+	public long getSymbolLookups() {
+		return lookups.sum();
+	}
+
+	public double getAverageScopesWalked() {
+		long n = lookups.sum();
+		return n == 0 ? 0 : (double)scopesWalked.sum() / n;
+	}
+
+	public long getInstructionsEmitted() {
+		return instructions.sum();
+	}
+}
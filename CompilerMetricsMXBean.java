@@ -0,0 +1,50 @@
+import java.util.Map;
+
+/**
+ * CompilerMetricsMXBean
+ *
+ * The management interface of CompilerMetrics, registered with the
+ * platform MBean server as egg:type=CompilerMetrics. All of the values
+ * are totals since the JVM started.
+ */
+public interface CompilerMetricsMXBean {
+	/**
+	 * Compilations that ended with P6.RESULT_CORRECT.
+	 */
+	long getCompilationsCompleted();
+
+	/**
+	 * Compilations that ended with any other result, or threw.
+	 */
+	long getCompilationsFailed();
+
+	/**
+	 * Wall time spent in each phase, in milliseconds, by phase name.
+	 */
+	Map<String, Long> getPhaseMillis();
+
+	/**
+	 * Tokens scanned.
+	 */
+	long getTokens();
+
+	/**
+	 * Tokens scanned per second of time spent parsing.
+	 */
+	double getTokensPerSecond();
+
+	/**
+	 * Calls of SymTable.lookupGlobal.
+	 */
+	long getSymbolLookups();
+
+	/**
+	 * Scopes looked in per call of SymTable.lookupGlobal.
+	 */
+	double getAverageScopesWalked();
+
+	/**
+	 * Instructions generated.
+	 */
+	long getInstructionsEmitted();
+}
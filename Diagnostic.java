@@ -0,0 +1,47 @@
+/**
+ * Diagnostic
+ *
+ * One warning or error message of a compilation, as ErrMsg reports it.
+ * Messages with no position (such as "No main function") have line and
+ * column 0.
+ */
+public class Diagnostic {
+	public enum Severity { WARNING, ERROR }
+
+	private final int line;
+	private final int column;
+	private final Severity severity;
+	private final String message;
+
+	public Diagnostic(int line, int column, Severity severity, String message) {
+		this.line = line;
+		this.column = column;
+		this.severity = severity;
+		this.message = message;
+	}
+
+	public int line() {
+		return line;
+	}
+
+	public int column() {
+		return column;
+	}
+
+	public Severity severity() {
+		return severity;
+	}
+
+	public String message() {
+		return message;
+	}
+
+	/**
+	 * Returns the message as ErrMsg prints it.
+	 */
+	public String toString() {
+		return line + ":" + column + " ***"
+			+ (severity == Severity.ERROR ? "ERROR" : "WARNING") + "*** "
+			+ message;
+	}
+}
@@ -0,0 +1,76 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * DiagnosticSink
+ *
+ * Collects the warnings and errors of one compilation. They are kept in
+ * the order they were reported and printed in one batch by
+ * {@link #flush}, so the messages of compilations running side by side
+ * never interleave. Any thread may report to a sink.
+ *
+ * A sink can be given a limit on the number of errors. Reporting the
+ * error that reaches the limit, or anything after it, throws a
+ * TooManyErrorsException so that the compilation stops early.
+ */
+public class DiagnosticSink {
+	private int maxErrors = 0;
+	private List<Diagnostic> reported = new ArrayList<Diagnostic>();
+	private int flushed = 0;  // how many of reported have been printed
+	private int errors = 0;
+
+	/**
+	 * @param maxErrors number of errors after which to stop, or 0 for no
+	 *                  limit
+	 */
+	public synchronized void setMaxErrors(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	public synchronized int maxErrors() {
+		return maxErrors;
+	}
+
+	public synchronized void report(Diagnostic diagnostic) {
+		if (limitReached()) {
+			throw new TooManyErrorsException(maxErrors);
+		}
+		reported.add(diagnostic);
+		if (diagnostic.severity() == Diagnostic.Severity.ERROR) {
+			errors++;
+			if (limitReached()) {
+				throw new TooManyErrorsException(maxErrors);
+			}
+		}
+	}
+
+	public synchronized boolean limitReached() {
+		return maxErrors > 0 && errors >= maxErrors;
+	}
+
+	public synchronized int errorCount() {
+		return errors;
+	}
+
+	/**
+	 * Returns everything reported so far, in order.
+	 */
+	public synchronized List<Diagnostic> reported() {
+		return new ArrayList<Diagnostic>(reported);
+	}
+
+	/**
+	 * Prints whatever has been reported since the last flush.
+	 */
+	public synchronized void flush(PrintStream out) {
+		if (flushed == reported.size()) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (; flushed < reported.size(); flushed++) {
+			sb.append(reported.get(flushed)).append(System.lineSeparator());
+		}
+		out.print(sb);
+		out.flush();
+	}
+}
@@ -1,10 +1,11 @@
 /**
  * ErrMsg
  *
- * This class is used to generate warning and fatal error messages.
+ * This class is used to generate warning and fatal error messages. The
+ * messages and the error flag belong to the compilation bound to the
+ * calling thread.
  */
 class ErrMsg {
-	private static boolean err = false;
 
 	/**
 	 * Generates a fatal error message.
@@ -13,8 +14,17 @@ class ErrMsg {
 	 * @param msg associated message for error
 	 */
 	static void fatal(int lineNum, int charNum, String msg) {
-		err = true;
-		System.err.println(lineNum + ":" + charNum + " ***ERROR*** " + msg);
+		Compilation.current().report(new Diagnostic(lineNum, charNum,
+			Diagnostic.Severity.ERROR, msg));
+	}
+
+	/**
+	 * Generates a fatal error message at an offset into the input.
+	 * @param offset offset for error location
+	 * @param msg associated message for error
+	 */
+	static void fatal(int offset, String msg) {
+		report(offset, Diagnostic.Severity.ERROR, msg);
 	}
 
 	/**
@@ -24,14 +34,35 @@ class ErrMsg {
 	 * @param msg associated message for warning
 	 */
 	static void warn(int lineNum, int charNum, String msg) {
-		System.err.println(lineNum + ":" + charNum + " ***WARNING*** " + msg);
+		Compilation.current().report(new Diagnostic(lineNum, charNum,
+			Diagnostic.Severity.WARNING, msg));
+	}
+
+	/**
+	 * Generates a warning message at an offset into the input.
+	 * @param offset offset for warning location
+	 * @param msg associated message for warning
+	 */
+	static void warn(int offset, String msg) {
+		report(offset, Diagnostic.Severity.WARNING, msg);
+	}
+
+	/**
+	 * Reports a message at the line and column of an offset into the
+	 * input of the compilation.
+	 */
+	static void report(int offset, Diagnostic.Severity severity, String msg) {
+		Compilation comp = Compilation.current();
+		LineTable lines = comp.lines();
+		comp.report(new Diagnostic(lines.line(offset), lines.column(offset),
+			severity, msg));
 	}
 
 	/**
 	 * Returns the err flag.
 	 */
 	static boolean getErr() {
-		return err;
+		return Compilation.current().hasErrors();
 	}
 
 }
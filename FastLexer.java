@@ -0,0 +1,558 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import java_cup.runtime.*;
+
+/**
+ * FastLexer
+ *
+ * A hand-written scanner for egg that returns exactly the tokens, and
+ * reports exactly the errors, that the JLex-generated Yylex does, but
+ * works on the bytes of the whole input held in an array. Keywords are
+ * told from identifiers with a perfect hash, and integer literals are
+ * converted in the same pass that finds their end.
+ *
+ * Like Yylex, it gives each token and message the offset it starts at,
+ * and keeps no line or column of its own; the LineTable of the input
+ * turns offsets into those when they are needed. It records in the table
+ * the unterminated string literals, which the column is not moved past.
+ *
+ * Some of Yylex's behavior that this keeps on purpose:
+ *   - a carriage return anywhere but in a comment or string literal
+ *     matches no rule at all, which ends the scan with an Error;
+ *   - any character outside of ASCII ends the scan with an exception
+ *     (Yylex's tables only cover ASCII) as soon as the scanner looks at
+ *     it, which is one character past the end of the token before it, or
+ *     for a string literal, as far as any of the string rules could
+ *     still match.
+ * Since every other character is ASCII, the input may be in any
+ * ASCII-compatible encoding.
+ *
+ * The tokens can either be handed out one Symbol at a time, as from
+ * Yylex, or all be put into a TokenStream by tokens(), which makes no
+ * object per token.
+ */
+class FastLexer implements Scanner {
+	// classes of the bytes that can start or continue a token
+	private static final byte OTHER = 0;
+	private static final byte LETTER = 1;  // also '_'
+	private static final byte DIGIT = 2;
+	private static final byte[] CLASS = new byte[128];
+
+	// keywords, at the perfect hash of their first and last characters
+	private static final int HASH_SIZE = 32;
+	private static final byte[][] KEYWORDS = new byte[HASH_SIZE][];
+	private static final int[] KEYWORD_SYMS = new int[HASH_SIZE];
+
+	static {
+		for (int c = 'a'; c <= 'z'; c++) {
+			CLASS[c] = LETTER;
+			CLASS[c - 'a' + 'A'] = LETTER;
+		}
+		CLASS['_'] = LETTER;
+		for (int c = '0'; c <= '9'; c++) {
+			CLASS[c] = DIGIT;
+		}
+
+		keyword("bool", sym.BOOL);
+		keyword("int", sym.INT);
+		keyword("void", sym.VOID);
+		keyword("true", sym.TRUE);
+		keyword("false", sym.FALSE);
+		keyword("struct", sym.STRUCT);
+		keyword("cin", sym.CIN);
+		keyword("cout", sym.COUT);
+		keyword("if", sym.IF);
+		keyword("else", sym.ELSE);
+		keyword("while", sym.WHILE);
+		keyword("return", sym.RETURN);
+		keyword("repeat", sym.REPEAT);
+	}
+
+	private static void keyword(String word, int symbol) {
+		byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+		int h = hash(bytes, 0, bytes.length);
+		if (KEYWORDS[h] != null) {
+			throw new ExceptionInInitializerError("keyword hash collision");
+		}
+		KEYWORDS[h] = bytes;
+		KEYWORD_SYMS[h] = symbol;
+	}
+
+	private static int hash(byte[] buf, int start, int length) {
+		return (buf[start] + buf[start + length - 1]) & (HASH_SIZE - 1);
+	}
+
+	private LineTable lines;
+	private byte[] buf;
+	private int end;
+	private int limit;  // end of the whole input, as far as touch looks
+	private int pos = 0;
+	private NamePool names;
+
+	// the token scan last found
+	private int tokKind;
+	private int tokStart;
+	private int tokLength;
+	private int tokValue;
+
+	// while tokens is filling one, the stream that keeps the messages
+	private TokenStream stream;
+
+	/**
+	 * @param lines table of the input, which holds it
+	 * @param names identifiers of the compilation
+	 */
+	FastLexer(LineTable lines, NamePool names) {
+		this(lines, 0, lines.length(), names);
+	}
+
+	/**
+	 * Scans part of the input, as the scan of the whole would from start
+	 * on. That is so if start is 0 or just after a newline or a token.
+	 * @param lines table of the input, which holds it
+	 * @param start where in the input to start
+	 * @param end where in the input to stop
+	 * @param names identifiers of the compilation
+	 */
+	FastLexer(LineTable lines, int start, int end, NamePool names) {
+		this.lines = lines;
+		this.buf = lines.source();
+		this.pos = start;
+		this.end = end;
+		this.limit = lines.length();
+		this.names = names;
+	}
+
+	/**
+	 * @param buf the input
+	 * @param length number of bytes of buf that hold the input
+	 * @param names identifiers of the compilation
+	 */
+	FastLexer(byte[] buf, int length, NamePool names) {
+		this(new LineTable(buf, length), names);
+	}
+
+	/**
+	 * @param buf the input
+	 * @param names identifiers of the compilation
+	 */
+	FastLexer(byte[] buf, NamePool names) {
+		this(buf, buf.length, names);
+	}
+
+	public Symbol next_token() throws IOException {
+		switch (scan()) {
+		case sym.EOF:
+			return new Symbol(sym.EOF);
+		case sym.ID:
+			return new Symbol(sym.ID, new IdTokenVal(tokStart,
+				names.name(tokValue), tokValue));
+		case sym.INTLITERAL:
+			return new Symbol(sym.INTLITERAL,
+				new IntLitTokenVal(tokStart, tokValue));
+		case sym.STRINGLITERAL:
+			return new Symbol(sym.STRINGLITERAL,
+				new StrLitTokenVal(buf, tokStart, tokLength));
+		default:
+			return new Symbol(tokKind, new TokenVal(tokStart));
+		}
+	}
+
+	/**
+	 * Scans the rest of the input into a TokenStream, which ends with an
+	 * EOF token unless the scan ended with an exception or Error; that is
+	 * kept in the stream instead.
+	 */
+	TokenStream tokens() {
+		// egg source runs to a little over three bytes a token
+		TokenStream tokens = new TokenStream(lines, (end - pos) / 3);
+		try {
+			while (scanInto(tokens) != sym.EOF) {
+			}
+		} catch (IOException | Error e) {
+			tokens.fail(e, pos);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Scans the next token into a TokenStream, which also keeps the
+	 * messages reported before it.
+	 * @return its kind
+	 */
+	int scanInto(TokenStream tokens) throws IOException {
+		stream = tokens;
+		try {
+			int kind = scan();
+			tokens.add(kind, tokStart, tokLength, tokValue);
+			return kind;
+		} finally {
+			stream = null;
+		}
+	}
+
+	/**
+	 * Finds the next token.
+	 * @return its kind, which is also left in tokKind with the rest of
+	 *         the token's fields
+	 */
+	private int scan() throws IOException {
+		while (pos < end) {
+			int c = buf[pos];
+			if (c < 0) {
+				throw nonAscii();
+			}
+			byte cls = CLASS[c];
+			if (cls == LETTER) {
+				return identifier();
+			} else if (cls == DIGIT) {
+				return intLiteral();
+			}
+
+			switch (c) {
+			case ' ':
+			case '\t':
+				do {
+					pos++;
+				} while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t'));
+				touch(pos);
+				continue;
+			case '\n':
+				touch(pos + 1);
+				pos++;
+				continue;
+			case '"':
+				if (stringLiteral()) {
+					return sym.STRINGLITERAL;
+				}
+				continue;
+			case '#':
+				comment();
+				continue;
+			case '/':
+				if (pos + 1 < end && buf[pos + 1] == '/') {
+					comment();
+					continue;
+				}
+				return token(sym.DIVIDE, 1);
+			case '{':
+				return token(sym.LCURLY, 1);
+			case '}':
+				return token(sym.RCURLY, 1);
+			case '(':
+				return token(sym.LPAREN, 1);
+			case ')':
+				return token(sym.RPAREN, 1);
+			case ';':
+				return token(sym.SEMICOLON, 1);
+			case ',':
+				return token(sym.COMMA, 1);
+			case '.':
+				return token(sym.DOT, 1);
+			case '*':
+				return token(sym.TIMES, 1);
+			case '<':
+				return next('<') ? token(sym.WRITE, 2)
+					: next('=') ? token(sym.LESSEQ, 2) : token(sym.LESS, 1);
+			case '>':
+				return next('>') ? token(sym.READ, 2)
+					: next('=') ? token(sym.GREATEREQ, 2) : token(sym.GREATER, 1);
+			case '+':
+				return next('+') ? token(sym.PLUSPLUS, 2) : token(sym.PLUS, 1);
+			case '-':
+				return next('-') ? token(sym.MINUSMINUS, 2) : token(sym.MINUS, 1);
+			case '!':
+				return next('=') ? token(sym.NOTEQUALS, 2) : token(sym.NOT, 1);
+			case '=':
+				return next('=') ? token(sym.EQUALS, 2) : token(sym.ASSIGN, 1);
+			case '&':
+				if (next('&')) {
+					return token(sym.AND, 2);
+				}
+				break;
+			case '|':
+				if (next('|')) {
+					return token(sym.OR, 2);
+				}
+				break;
+			}
+
+			if (c == '\r') {
+				throw new Error("Lexical Error: Unmatched Input.");
+			}
+			touch(pos + 1);
+			fatal(pos, "illegal character ignored: " + (char)c);
+			pos++;
+		}
+		setToken(sym.EOF, pos, 0, 0);
+		return sym.EOF;
+	}
+
+	/**
+	 * Makes the token at start the one last found.
+	 */
+	private void setToken(int kind, int start, int length, int value) {
+		tokKind = kind;
+		tokStart = start;
+		tokLength = length;
+		tokValue = value;
+	}
+
+	/**
+	 * Reports an error at offset, or keeps it in the stream being filled.
+	 */
+	private void fatal(int offset, String msg) {
+		if (stream != null) {
+			stream.report(offset, Diagnostic.Severity.ERROR, msg);
+		} else {
+			ErrMsg.fatal(offset, msg);
+		}
+	}
+
+	/**
+	 * Reports a warning at offset, or keeps it in the stream being filled.
+	 */
+	private void warn(int offset, String msg) {
+		if (stream != null) {
+			stream.report(offset, Diagnostic.Severity.WARNING, msg);
+		} else {
+			ErrMsg.warn(offset, msg);
+		}
+	}
+
+	/**
+	 * Whether the byte after the current one is c.
+	 */
+	private boolean next(char c) {
+		return pos + 1 < end && buf[pos + 1] == c;
+	}
+
+	/**
+	 * Finds the token of the given length at the current position.
+	 */
+	private int token(int symbol, int length) throws IOException {
+		touch(pos + length);
+		setToken(symbol, pos, length, 0);
+		pos += length;
+		return symbol;
+	}
+
+	private int identifier() throws IOException {
+		int start = pos;
+		do {
+			pos++;
+		} while (pos < end && buf[pos] >= 0 && CLASS[buf[pos]] != OTHER);
+		touch(pos);
+		int length = pos - start;
+
+		int h = hash(buf, start, length);
+		if (KEYWORDS[h] != null && isKeyword(KEYWORDS[h], start, length)) {
+			setToken(KEYWORD_SYMS[h], start, length, 0);
+		} else {
+			setToken(sym.ID, start, length, names.intern(buf, start, length));
+		}
+		return tokKind;
+	}
+
+	private boolean isKeyword(byte[] keyword, int start, int length) {
+		if (keyword.length != length) {
+			return false;
+		}
+		for (int k = 0; k < length; k++) {
+			if (buf[start + k] != keyword[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int intLiteral() throws IOException {
+		int start = pos;
+		long val = 0;
+		do {
+			if (val <= Integer.MAX_VALUE) {
+				val = val * 10 + (buf[pos] - '0');
+			}
+			pos++;
+		} while (pos < end && buf[pos] >= '0' && buf[pos] <= '9');
+		touch(pos);
+
+		int intVal = (int)val;
+		if (val > Integer.MAX_VALUE) {
+			warn(start, "integer literal too large; using max value");
+			intVal = Integer.MAX_VALUE;
+		}
+		setToken(sym.INTLITERAL, start, pos - start, intVal);
+		return sym.INTLITERAL;
+	}
+
+	/**
+	 * Skips a comment, up to but not including the end of its line.
+	 */
+	private void comment() throws IOException {
+		while (pos < end && buf[pos] != '\n') {
+			if (buf[pos] < 0) {
+				throw nonAscii();
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * Scans a string literal, or what Yylex takes for a bad one. Yylex has
+	 * four rules for these (written below with P for the valid contents
+	 * of a literal, any mix of characters other than newline, quote and
+	 * backslash and of backslashes followed by one of n t ' " ? \, and X
+	 * for a backslash followed by any other character but a newline):
+	 *     1.  " P "                     a string literal
+	 *     2.  " P                       unterminated
+	 *     3.  " P X [^\n"]* "           bad escape
+	 *     4.  " P X? P \?               unterminated with bad escape
+	 * of which the longest match wins, or on a tie the one listed first.
+	 * They are run here side by side as a small NFA, as far as any of them
+	 * could still match.
+	 * @return whether it is a string literal; if not, the error has been
+	 *         reported
+	 */
+	private boolean stringLiteral() throws IOException {
+		int start = pos;
+		int[] match = { -1, pos + 1, -1, -1 };  // end of each rule's match
+
+		// states: in P; in P after a backslash; rule 3 after X; rule 4
+		// after X; rule 4 after X and a backslash; and just matched 1 or 3
+		boolean p = true, pEsc = false, bad3 = false, bad4 = false;
+		boolean bad4Esc = false, matched = false;
+		int at = pos + 1;
+		while ((p || pEsc || bad3 || bad4 || bad4Esc || matched) && at < end) {
+			int c = buf[at];
+			if (c < 0) {
+				throw nonAscii();
+			}
+			at++;
+
+			boolean np = false, npEsc = false, nBad3 = false, nBad4 = false;
+			boolean nBad4Esc = false;
+			matched = false;
+			if (p) {
+				if (c == '"') {
+					match[0] = at;
+					matched = true;
+				} else if (c == '\\') {
+					npEsc = true;
+				} else if (c != '\n') {
+					np = true;
+				}
+			}
+			if (pEsc) {
+				if (isEscapedChar(c)) {
+					np = true;
+				} else if (c != '\n') {
+					nBad3 = true;
+					nBad4 = true;
+				}
+			}
+			if (bad3) {
+				if (c == '"') {
+					match[2] = at;
+					matched = true;
+				} else if (c != '\n') {
+					nBad3 = true;
+				}
+			}
+			if (bad4) {
+				if (c == '\\') {
+					nBad4Esc = true;
+				} else if (c != '"' && c != '\n') {
+					nBad4 = true;
+				}
+			}
+			if (bad4Esc && isEscapedChar(c)) {
+				nBad4 = true;
+			}
+
+			p = np;
+			pEsc = npEsc;
+			bad3 = nBad3;
+			bad4 = nBad4;
+			bad4Esc = nBad4Esc;
+			if (p) {
+				match[1] = at;
+			}
+			if (pEsc || bad4 || bad4Esc) {
+				match[3] = at;
+			}
+		}
+
+		int rule = 0;
+		for (int k = 1; k < match.length; k++) {
+			if (match[k] > match[rule]) {
+				rule = k;
+			}
+		}
+		pos = match[rule];
+		int length = pos - start;
+
+		switch (rule) {
+		case 0:
+			setToken(sym.STRINGLITERAL, start, length, 0);
+			break;
+		case 1:
+			fatal(start, "unterminated string literal ignored");
+			lines.unterminated(start, length);
+			break;
+		case 2:
+			fatal(start, "string literal with bad escaped character ignored");
+			break;
+		default:
+			fatal(start,
+				"unterminated string literal with bad escaped character ignored");
+			lines.unterminated(start, length);
+			break;
+		}
+		return rule == 0;
+	}
+
+	private static boolean isEscapedChar(int c) {
+		return c == 'n' || c == 't' || c == '\'' || c == '"' || c == '?'
+			|| c == '\\';
+	}
+
+	/**
+	 * Yylex looks at the character after each token before it returns
+	 * the token, and fails there if it is not ASCII.
+	 */
+	private void touch(int at) throws IOException {
+		if (at < limit && buf[at] < 0) {
+			throw nonAscii();
+		}
+	}
+
+	/**
+	 * Returns the exception the scan ends with at a character outside of
+	 * ASCII, on the line the scanner is on.
+	 */
+	private IOException nonAscii() {
+		return nonAscii(lines.line(pos));
+	}
+
+	/**
+	 * Returns the offset the scanner is at.
+	 */
+	int offset() {
+		return pos;
+	}
+
+	LineTable lines() {
+		return lines;
+	}
+
+	/**
+	 * Returns the exception the scan ends with at a character outside of
+	 * ASCII on the given line.
+	 */
+	static IOException nonAscii(int line) {
+		return new CharConversionException("character outside of ASCII on line "
+			+ line);
+	}
+}
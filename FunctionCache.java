@@ -0,0 +1,208 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * FunctionCache
+ *
+ * A cache of the code generated for single functions, so that when one
+ * function of a file changes only that function is generated again.
+ *
+ * A function's key is the hash of its unparsed text after name analysis.
+ * IdNode.unparse prints the symbol of every name, and so the key covers
+ * the types, offsets and globalness of the variables and functions the
+ * body refers to, as well as the body itself. The function's own symbol
+ * is added since it holds the size of its frame.
+ *
+ * A function's labels are numbered from the compilation's label counter,
+ * so chunks are stored with their labels numbered from 0 and renumbered
+ * when they are replayed; the counter is advanced past them, so the code
+ * of the functions after a replayed one is numbered just as if it had
+ * been generated.
+ *
+ * Chunks are kept in memory (the least recently used are dropped past
+ * MAX_CHUNKS) and, if an OutputCache is given, on disk as well.
+ */
+public class FunctionCache {
+	public static final int MAX_CHUNKS = 4096;
+
+	private static final Pattern LABEL = Pattern.compile("\\.L(\\d+)");
+	private static final String ASCIIZ = "\t.asciiz";
+
+	private OutputCache disk;
+	private Map<String, Chunk> chunks =
+		new LinkedHashMap<String, Chunk>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, Chunk> e) {
+				return size() > MAX_CHUNKS;
+			}
+		};
+
+	/**
+	 * The code of one function, with its labels numbered from 0.
+	 */
+	static class Chunk {
+		String code;
+		int labels;
+		long instructions;
+
+		Chunk(String code, int labels, long instructions) {
+			this.code = code;
+			this.labels = labels;
+			this.instructions = instructions;
+		}
+	}
+
+	/**
+	 * @param disk cache to keep chunks in across runs, or null to keep
+	 *             them in memory only
+	 */
+	public FunctionCache(OutputCache disk) {
+		this.disk = disk;
+	}
+
+	/**
+	 * Returns the key of a function on which name analysis has been done.
+	 */
+	public String keyOf(FnDeclNode fn) {
+		StringWriter text = new StringWriter();
+		PrintWriter p = new PrintWriter(text);
+		p.println(fn.sym());
+		fn.unparse(p, 0);
+		p.flush();
+		return OutputCache.key("function", text.toString());
+	}
+
+	/**
+	 * Writes the cached code of a function to the output of the
+	 * compilation bound to the calling thread, if it is in the cache.
+	 * @return whether it was
+	 */
+	public boolean replay(String key) {
+		Chunk chunk;
+		synchronized (chunks) {
+			chunk = chunks.get(key);
+		}
+		if (chunk == null && disk != null) {
+			chunk = load(key);
+		}
+		if (chunk == null) {
+			return false;
+		}
+
+		Compilation comp = Compilation.current();
+		comp.out().print(renumber(chunk.code, comp.reserveLabels(chunk.labels)));
+		comp.countInstructions(chunk.instructions);
+		return true;
+	}
+
+	/**
+	 * Starts capturing the code generated for a function by the calling
+	 * thread; call finish on the result once it has been generated.
+	 */
+	public Recording record() {
+		return new Recording();
+	}
+
+	/**
+	 * The capture of one function's code.
+	 */
+	public class Recording {
+		private Compilation comp = Compilation.current();
+		private PrintWriter realOut = comp.out();
+		private StringWriter code = new StringWriter();
+		private int firstLabel = comp.reserveLabels(0);
+		private long instructions = comp.instructionCount();
+
+		Recording() {
+			comp.setOut(new PrintWriter(code));
+		}
+
+		/**
+		 * Writes the captured code to the real output and caches it.
+		 * @param key key of the function
+		 */
+		public void finish(String key) {
+			comp.out().flush();
+			comp.setOut(realOut);
+			realOut.print(code.toString());
+
+			Chunk chunk = new Chunk(renumber(code.toString(), -firstLabel),
+				comp.reserveLabels(0) - firstLabel,
+				comp.instructionCount() - instructions);
+			synchronized (chunks) {
+				chunks.put(key, chunk);
+			}
+			if (disk != null) {
+				store(key, chunk);
+			}
+		}
+	}
+
+	/**
+	 * Adds delta to the number of every label in the code, leaving the
+	 * contents of string literals alone.
+	 */
+	static String renumber(String code, int delta) {
+		if (delta == 0) {
+			return code;
+		}
+		StringBuilder sb = new StringBuilder(code.length());
+		int start = 0;
+		while (start < code.length()) {
+			int end = code.indexOf('\n', start) + 1;
+			if (end == 0) {
+				end = code.length();
+			}
+			String line = code.substring(start, end);
+			int literal = line.indexOf(ASCIIZ);
+			if (literal < 0) {
+				literal = line.length();
+			}
+			Matcher m = LABEL.matcher(line.substring(0, literal));
+			StringBuffer labels = new StringBuffer();
+			while (m.find()) {
+				m.appendReplacement(labels,
+					".L" + (Integer.parseInt(m.group(1)) + delta));
+			}
+			m.appendTail(labels);
+			sb.append(labels).append(line, literal, line.length());
+			start = end;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Disk entries hold the chunk's counts on the first line of the code.
+	 */
+	private Chunk load(String key) {
+		OutputCache.Entry entry = disk.get(key);
+		if (entry == null) {
+			return null;
+		}
+		String text = new String(entry.output, StandardCharsets.UTF_8);
+		int newline = text.indexOf('\n');
+		try {
+			String[] counts = text.substring(0, newline).split(" ");
+			Chunk chunk = new Chunk(text.substring(newline + 1),
+				Integer.parseInt(counts[0]), Long.parseLong(counts[1]));
+			synchronized (chunks) {
+				chunks.put(key, chunk);
+			}
+			return chunk;
+		} catch (RuntimeException ex) {
+			return null;  // not a chunk
+		}
+	}
+
+	private void store(String key, Chunk chunk) {
+		String text = chunk.labels + " " + chunk.instructions + "\n" + chunk.code;
+		try {
+			disk.put(key, new OutputCache.Entry(
+				text.getBytes(StandardCharsets.UTF_8), new byte[0],
+				P6.RESULT_CORRECT));
+		} catch (IOException ex) {
+			// it is still cached in memory
+		}
+	}
+}
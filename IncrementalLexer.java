@@ -0,0 +1,152 @@
+import java.io.*;
+
+/**
+ * IncrementalLexer
+ *
+ * Brings a TokenStream up to date after an edit of its source, for an
+ * editor or a watcher that sees the same file change a little at a time.
+ * Only the tokens around the edit are scanned again:
+ *   - The scan starts just after the last token before the line of the
+ *     edit. FastLexer looks ahead one byte past each token, and in a bad
+ *     string literal as far as the next newline, but never further; so
+ *     nothing it found before that point could change.
+ *   - It stops at the first token past the edit that starts where an old
+ *     token started (moved by the size of the edit). The scanner keeps no
+ *     state between tokens but where it is, so every token and message
+ *     from there on is the old one, moved by the edit. If no such token
+ *     comes, the scan goes on to the end.
+ * The result is the stream a scan of the whole new source would give,
+ * with the same messages kept before the same tokens, the same
+ * unterminated string literals in its LineTable, and the IDs in the same
+ * pool (new names are added to it).
+ *
+ * The source is edited in place in the stream's LineTable. Besides the
+ * scan, an edit costs moving the gaps of the token arrays (see
+ * TokenStream) and of the source and its line starts (see LineTable)
+ * from the last edit to this one; the scan reads from the line of the
+ * edit up to the first newline at which it is back in step, so none of
+ * it takes time in proportion to the size of the source. The first edit
+ * of a stream, and the first after its source was given out, copies the
+ * source.
+ */
+class IncrementalLexer {
+	private IncrementalLexer() {
+	}
+
+	/**
+	 * The tokens an edit changed: those from index from up to oldTo in the
+	 * stream before the edit are from from up to newTo after it. The
+	 * tokens after them are the same, moved by the edit.
+	 */
+	static class Change {
+		final int from;
+		final int oldTo;
+		final int newTo;
+
+		Change(int from, int oldTo, int newTo) {
+			this.from = from;
+			this.oldTo = oldTo;
+			this.newTo = newTo;
+		}
+
+		public String toString() {
+			return "[" + from + ", " + oldTo + ") -> [" + from + ", " + newTo
+				+ ")";
+		}
+	}
+
+	/**
+	 * Replaces the bytes of the source of tokens from offset to offset +
+	 * removed with inserted, and scans the tokens again as needed.
+	 * @param names pool the ID values of tokens are numbers in
+	 * @return the tokens that changed
+	 */
+	static Change edit(TokenStream tokens, int offset, int removed,
+			byte[] inserted, NamePool names) {
+		LineTable lines = tokens.lines();
+		int oldLength = lines.length();
+		if (offset < 0 || removed < 0 || offset + removed > oldLength) {
+			throw new IndexOutOfBoundsException("edit of " + removed
+				+ " bytes at " + offset + " of " + oldLength);
+		}
+		int delta = inserted.length - removed;
+
+		// the first token of the line of the edit, and where the scan of the
+		// whole was just before it
+		int from = firstEndingAt(tokens, lines.lineStart(offset));
+		int start = 0;
+		if (from > 0) {
+			start = tokens.offset(from - 1) + tokens.length(from - 1);
+		}
+
+		lines.edit(offset, removed, inserted);
+
+		// the scan reads the input up to a newline at a time, where the scan
+		// of the whole is in the state it starts in (but for looking at the
+		// byte after it, so the part it sees takes that too)
+		int editEnd = offset + inserted.length;
+		int end = lines.lineEnd(editEnd);
+		int seen = Math.min(end + 1, lines.length());
+		LineTable part = new LineTable(lines.source(seen), seen);
+		FastLexer lexer = new FastLexer(part, start, end, names);
+		TokenStream scanned = new TokenStream(part, 16);
+		int to = tokens.size();
+		int match = from;  // the old token that may start where the scan is
+		try {
+			while (true) {
+				int kind = lexer.scanInto(scanned);
+				int k = scanned.size() - 1;
+				if (kind == sym.EOF && end < lines.length()) {
+					// not back in step yet: go on with twice as much
+					scanned.truncate(k);
+					int next = lines.lineEnd(Math.min(2 * end - start,
+						lines.length()));
+					seen = Math.min(next + 1, lines.length());
+					part.extend(lines.source(seen), seen);
+					lexer = new FastLexer(part, end, next, names);
+					end = next;
+					continue;
+				}
+				if (scanned.offset(k) >= editEnd) {
+					int oldOffset = scanned.offset(k) - delta;
+					while (match < tokens.size()
+							&& tokens.offset(match) < oldOffset) {
+						match++;
+					}
+					if (match < tokens.size()
+							&& tokens.offset(match) == oldOffset) {
+						to = match;
+						scanned.truncate(k);
+						break;
+					}
+				}
+				if (kind == sym.EOF) {
+					break;
+				}
+			}
+		} catch (IOException | Error e) {
+			scanned.fail(e, lexer.offset());
+		}
+
+		tokens.replace(from, to, scanned, delta);
+		return new Change(from, to, from + scanned.size());
+	}
+
+	/**
+	 * Returns the index of the first token that ends at or after offset,
+	 * or the number of tokens if there is none.
+	 */
+	private static int firstEndingAt(TokenStream tokens, int offset) {
+		int low = 0;
+		int high = tokens.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (tokens.offset(mid) + tokens.length(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,102 @@
+import java.util.*;
+
+/**
+ * IntMap
+ *
+ * A hash map from int keys to values, kept in plain arrays by open
+ * addressing, so that neither a key nor a lookup is boxed. It is what
+ * SymTable keeps each scope in, keyed by name number (see NamePool).
+ */
+class IntMap<V> {
+	private int[] keys;
+	private Object[] values;  // null in the free slots
+	private int size = 0;
+
+	IntMap() {
+		this(8);
+	}
+
+	/**
+	 * @param capacity number of entries to make room for up front
+	 */
+	IntMap(int capacity) {
+		int slots = 4;
+		while (slots < 2 * capacity) {
+			slots *= 2;
+		}
+		keys = new int[slots];
+		values = new Object[slots];
+	}
+
+	/**
+	 * Returns the value of key, or null if it has none.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		int mask = keys.length - 1;
+		for (int slot = hash(key) & mask; values[slot] != null;
+				slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return (V)values[slot];
+			}
+		}
+		return null;
+	}
+
+	boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Sets the value of key, which must not be null.
+	 */
+	void put(int key, V value) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if (values[slot] == null) {
+			size++;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (2 * size > keys.length) {
+			grow();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void grow() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[2 * oldKeys.length];
+		values = new Object[2 * oldKeys.length];
+		size = 0;
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldValues[slot] != null) {
+				put(oldKeys[slot], (V)oldValues[slot]);
+			}
+		}
+	}
+
+	// name numbers are dense, so spread them over the table a little
+	private static int hash(int key) {
+		return key * 0x9E3779B9 >>> 16 ^ key;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (values[slot] != null) {
+				sb.append(sb.length() > 1 ? ", " : "");
+				sb.append(keys[slot]).append('=').append(values[slot]);
+			}
+		}
+		return sb.append('}').toString();
+	}
+}
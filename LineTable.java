@@ -0,0 +1,462 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * LineTable
+ *
+ * Turns offsets into the input of a compilation into the line and column
+ * numbers its messages give. The tokens and the tree only keep offsets;
+ * the index of where each line starts is made from the input the first
+ * time a position is asked for, so a compile with nothing to report
+ * never makes it.
+ *
+ * Lines and columns are counted as the scanners always have:
+ *   - a newline, a carriage return, or the two as a pair ends a line;
+ *   - columns start at 1 after each newline (a carriage return alone,
+ *     which can only be inside a comment or string literal, does not
+ *     start them over) and go up by one a byte;
+ *   - but the column is not moved past an unterminated string literal,
+ *     so everything after one on its line is that many columns to the
+ *     left. The scanner calls unterminated for each of them.
+ * The input is ASCII up to anything a scanner reads (see FastLexer), so
+ * the offsets into it are the same in bytes and in characters. A scanner
+ * that reads the input from a file itself (Yylex) need not hold it all;
+ * the table then reads the file again the first time it needs it.
+ *
+ * The table also holds the input of a TokenStream that IncrementalLexer
+ * keeps up to date, and edit changes it in place. The input and the line
+ * starts are then gap buffers, as the token arrays are: the free room of
+ * each is kept where the last edit was, so an edit takes time in
+ * proportion to its size and to how far it is from the one before, not
+ * to the size of the input.
+ */
+class LineTable {
+	// the input is source[0, gapStart) and then the bytes from gapEnd on,
+	// length in all. The gap is empty, or at the end, but in an array the
+	// table made for edit (owned), which no one else can see.
+	private byte[] source;  // null until read from file
+	private int length;
+	private int gapStart;
+	private int gapEnd;
+	private boolean owned = false;
+	private Path file;
+
+	// offsets the lines start at, made on first use and then kept up to
+	// date by edit; those after the gap, at index startsGap, are stored
+	// less startsShift, so moving all of them on takes changing just that
+	private int[] starts;
+	private int lines;
+	private int startsGap;
+	private int startsShift;
+
+	// offsets and lengths of the unterminated string literals, in order
+	private int[] shortOffsets = new int[0];
+	private int[] shortLengths = new int[0];
+	private int shorts = 0;
+
+	/**
+	 * Makes the table of an empty input, until reset gives it one.
+	 */
+	LineTable() {
+		this(new byte[0], 0);
+	}
+
+	/**
+	 * @param source the input
+	 * @param length number of bytes of source that hold the input
+	 */
+	LineTable(byte[] source, int length) {
+		this.source = source;
+		this.length = length;
+		gapStart = length;
+		gapEnd = length;
+	}
+
+	/**
+	 * Starts over on another input, with no literals recorded.
+	 */
+	synchronized void reset(byte[] source, int length) {
+		this.source = source;
+		this.length = length;
+		gapStart = length;
+		gapEnd = length;
+		owned = false;
+		file = null;
+		starts = null;
+		shorts = 0;
+	}
+
+	/**
+	 * Starts over on the input in a file, which is only read if a
+	 * position is asked for.
+	 */
+	synchronized void reset(Path file) {
+		source = null;
+		length = 0;
+		gapStart = 0;
+		gapEnd = 0;
+		owned = false;
+		this.file = file;
+		starts = null;
+		shorts = 0;
+	}
+
+	/**
+	 * Takes a longer part of the same input, from its start, keeping the
+	 * literals recorded. For a table a scanner records the literals of a
+	 * part of the input in (see IncrementalLexer).
+	 */
+	synchronized void extend(byte[] source, int length) {
+		this.source = source;
+		this.length = length;
+		gapStart = length;
+		gapEnd = length;
+		owned = false;
+		starts = null;
+	}
+
+	/**
+	 * Returns the array whose first length() bytes are the input. Later
+	 * edits do not change it.
+	 */
+	synchronized byte[] source() {
+		load();
+		moveGap(length);
+		owned = false;  // the next edit makes a copy
+		return source;
+	}
+
+	/**
+	 * Returns the array whose bytes before end are the input, for a
+	 * scanner to read before the next edit, which may change them.
+	 */
+	synchronized byte[] source(int end) {
+		load();
+		if (gapStart < end) {
+			moveGap(end);
+		}
+		return source;
+	}
+
+	synchronized int length() {
+		load();
+		return length;
+	}
+
+	/**
+	 * Reads the input from its file if that has not been done.
+	 */
+	private void load() {
+		if (source == null) {
+			try {
+				source = Files.readAllBytes(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			length = source.length;
+			gapStart = length;
+			gapEnd = length;
+		}
+	}
+
+	/**
+	 * Replaces the removed bytes of the input from offset on with
+	 * inserted. The line starts, if made, are moved on rather than made
+	 * again. The unterminated string literals are left as they are, for
+	 * replaceLiterals. The first edit, and the first after source() has
+	 * given the array out, copies the input into an array of the table's
+	 * own.
+	 */
+	synchronized void edit(int offset, int removed, byte[] inserted) {
+		load();
+		int delta = inserted.length - removed;
+		if (owned) {
+			moveGap(offset);
+			gapEnd += removed;
+			reserve(inserted.length);
+		} else {
+			int tail = length - offset - removed;
+			int capacity = length + delta + Math.max(4096, length / 8);
+			byte[] copy = new byte[capacity];
+			System.arraycopy(source, 0, copy, 0, offset);
+			System.arraycopy(source, offset + removed, copy, capacity - tail,
+				tail);
+			source = copy;
+			gapStart = offset;
+			gapEnd = capacity - tail;
+			owned = true;
+		}
+		System.arraycopy(inserted, 0, source, gapStart, inserted.length);
+		gapStart += inserted.length;
+		length += delta;
+
+		if (starts != null) {
+			// the lines that started after a removed byte or the one just
+			// past them (whose carriage return before may have gone)
+			int first = firstStartAt(offset + 1);
+			int last = firstStartAt(offset + removed + 2);
+			moveStartsGap(last);
+			startsGap = first;
+			lines -= last - first;
+			startsShift += delta;
+			// and those that start after an inserted byte or the one just
+			// past them
+			int end = Math.min(offset + inserted.length + 1, length);
+			for (int k = offset; k < end; k++) {
+				if (startsLine(k)) {
+					addStart(k + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the gap to offset k.
+	 */
+	private void moveGap(int k) {
+		int gap = gapEnd - gapStart;
+		if (gap > 0) {
+			if (k < gapStart) {
+				System.arraycopy(source, k, source, k + gap, gapStart - k);
+			} else if (k > gapStart) {
+				System.arraycopy(source, gapEnd, source, gapStart, k - gapStart);
+			}
+		}
+		gapStart = k;
+		gapEnd = k + gap;
+	}
+
+	/**
+	 * Makes the gap at least n long.
+	 */
+	private void reserve(int n) {
+		if (gapEnd - gapStart >= n) {
+			return;
+		}
+		int tail = length - gapStart;
+		int capacity = Math.max(source.length + source.length / 2,
+			length + n);
+		byte[] bigger = new byte[capacity];
+		System.arraycopy(source, 0, bigger, 0, gapStart);
+		System.arraycopy(source, gapEnd, bigger, capacity - tail, tail);
+		source = bigger;
+		gapEnd = capacity - tail;
+	}
+
+	/**
+	 * Returns the byte of the input at offset k.
+	 */
+	private byte at(int k) {
+		return source[k < gapStart ? k : k + gapEnd - gapStart];
+	}
+
+	/**
+	 * Returns the offset just after the last newline before offset, or 0:
+	 * where the column of offset is counted from.
+	 */
+	synchronized int lineStart(int offset) {
+		load();
+		int k = offset;
+		while (k > 0 && at(k - 1) != '\n') {
+			k--;
+		}
+		return k;
+	}
+
+	/**
+	 * Returns the offset just after the first newline at or after
+	 * offset, or the length of the input if there is none.
+	 */
+	synchronized int lineEnd(int offset) {
+		load();
+		for (int k = offset; k < length; k++) {
+			if (at(k) == '\n') {
+				return k + 1;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Records an unterminated string literal, after the last one recorded.
+	 */
+	synchronized void unterminated(int offset, int literalLength) {
+		if (shorts == shortOffsets.length) {
+			int capacity = Math.max(8, 2 * shorts);
+			shortOffsets = Arrays.copyOf(shortOffsets, capacity);
+			shortLengths = Arrays.copyOf(shortLengths, capacity);
+		}
+		shortOffsets[shorts] = offset;
+		shortLengths[shorts] = literalLength;
+		shorts++;
+	}
+
+	/**
+	 * Records the unterminated string literals of another table of the
+	 * same input, which all come after those of this one.
+	 */
+	synchronized void append(LineTable other) {
+		for (int k = 0; k < other.shorts; k++) {
+			unterminated(other.shortOffsets[k], other.shortLengths[k]);
+		}
+	}
+
+	/**
+	 * After an edit that replaced the bytes from offset from up to to with
+	 * a run that is delta bytes longer, replaces the literals recorded in
+	 * that run by those of another table (which may have more), and moves
+	 * the ones after it on by delta.
+	 */
+	synchronized void replaceLiterals(int from, int to, LineTable with,
+			int delta) {
+		int first = firstAtOrAfter(from);
+		int last = firstAtOrAfter(to);
+		int[] offsets = new int[first + with.shorts + shorts - last];
+		int[] lengths = new int[offsets.length];
+		System.arraycopy(shortOffsets, 0, offsets, 0, first);
+		System.arraycopy(shortLengths, 0, lengths, 0, first);
+		int n = first;
+		for (int k = 0; k < with.shorts; k++, n++) {
+			offsets[n] = with.shortOffsets[k];
+			lengths[n] = with.shortLengths[k];
+		}
+		for (int k = last; k < shorts; k++, n++) {
+			offsets[n] = shortOffsets[k] + delta;
+			lengths[n] = shortLengths[k];
+		}
+		shortOffsets = offsets;
+		shortLengths = lengths;
+		shorts = n;
+	}
+
+	/**
+	 * Returns the line offset is on, from 1.
+	 */
+	synchronized int line(int offset) {
+		makeStarts();
+		return firstStartAt(offset + 1);
+	}
+
+	/**
+	 * Returns the column offset is at, from 1.
+	 */
+	synchronized int column(int offset) {
+		int lineStart = lineStart(offset);
+		int column = offset - lineStart + 1;
+		for (int k = firstAtOrAfter(lineStart);
+				k < shorts && shortOffsets[k] < offset; k++) {
+			column -= shortLengths[k];
+		}
+		return column;
+	}
+
+	private void makeStarts() {
+		if (starts == null) {
+			load();
+			int n = 1;
+			for (int k = 0; k < length; k++) {
+				if (startsLine(k)) {
+					n++;
+				}
+			}
+			starts = new int[n];
+			n = 1;
+			for (int k = 0; k < length; k++) {
+				if (startsLine(k)) {
+					starts[n++] = k + 1;
+				}
+			}
+			lines = n;
+			startsGap = n;
+			startsShift = 0;
+		}
+	}
+
+	/**
+	 * Returns the offset line i + 1 starts at.
+	 */
+	private int start(int i) {
+		return i < startsGap ? starts[i]
+			: starts[i + starts.length - lines] + startsShift;
+	}
+
+	/**
+	 * Returns the index of the first line start at or after offset, or
+	 * the number of lines if there is none.
+	 */
+	private int firstStartAt(int offset) {
+		int low = 0;
+		int high = lines;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (start(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Moves the gap of the line starts to index i.
+	 */
+	private void moveStartsGap(int i) {
+		int gap = starts.length - lines;
+		if (i < startsGap) {
+			System.arraycopy(starts, i, starts, i + gap, startsGap - i);
+			for (int k = i + gap; k < startsGap + gap; k++) {
+				starts[k] -= startsShift;
+			}
+		} else if (i > startsGap) {
+			System.arraycopy(starts, startsGap + gap, starts, startsGap,
+				i - startsGap);
+			for (int k = startsGap; k < i; k++) {
+				starts[k] += startsShift;
+			}
+		}
+		startsGap = i;
+	}
+
+	/**
+	 * Adds a line start at the gap.
+	 */
+	private void addStart(int offset) {
+		if (starts.length == lines) {
+			int tail = lines - startsGap;
+			int capacity = Math.max(16, starts.length + starts.length / 2);
+			int[] bigger = new int[capacity];
+			System.arraycopy(starts, 0, bigger, 0, startsGap);
+			System.arraycopy(starts, startsGap, bigger, capacity - tail, tail);
+			starts = bigger;
+		}
+		starts[startsGap++] = offset;
+		lines++;
+	}
+
+	/**
+	 * Whether a line starts after the byte at k.
+	 */
+	private boolean startsLine(int k) {
+		return at(k) == '\r'
+			|| at(k) == '\n' && (k == 0 || at(k - 1) != '\r');
+	}
+
+	/**
+	 * Returns the index of the first literal recorded at or after offset.
+	 */
+	private int firstAtOrAfter(int offset) {
+		int low = 0;
+		int high = shorts;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (shortOffsets[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
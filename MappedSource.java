@@ -0,0 +1,88 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * MappedSource
+ *
+ * Reads an egg source file through a memory map of it (FileChannel.map),
+ * so that the scanners take its bytes straight from the page cache
+ * rather than through a FileReader and its charset decoder. Egg source is
+ * ASCII, so no decoding is needed:
+ *   - reader gives Yylex each byte as the char of the same value. A byte
+ *     outside of ASCII is read as U+FFFD, as an ASCII decoder reads it,
+ *     so that Yylex stops on it just as it does reading a FileReader.
+ *   - bytes copies the file out of the map for FastLexer, whose tokens
+ *     and string literals keep slices of a byte array.
+ * The map is let go of when it is garbage collected; the file is not held
+ * open.
+ */
+class MappedSource {
+	private MappedSource() {
+	}
+
+	/**
+	 * Maps the whole of a file, read only.
+	 */
+	static ByteBuffer map(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to map");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns a reader of the characters of a file, one a byte.
+	 */
+	static Reader reader(Path file) throws IOException {
+		return new ByteReader(map(file));
+	}
+
+	/**
+	 * Returns the bytes of a file.
+	 */
+	static byte[] bytes(Path file) throws IOException {
+		ByteBuffer map = map(file);
+		byte[] bytes = new byte[map.remaining()];
+		map.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Reads the bytes of a buffer as characters, without a decoder.
+	 */
+	private static class ByteReader extends Reader {
+		private ByteBuffer buf;
+		private byte[] bytes = new byte[0];  // what read copies out of buf
+
+		ByteReader(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		public int read(char[] cbuf, int off, int len) {
+			int n = Math.min(len, buf.remaining());
+			if (n == 0 && len > 0) {
+				return -1;
+			}
+			if (bytes.length < n) {
+				bytes = new byte[n];
+			}
+			buf.get(bytes, 0, n);
+			for (int k = 0; k < n; k++) {
+				int c = bytes[k];
+				cbuf[off + k] = c >= 0 ? (char)c : '\ufffd';
+			}
+			return n;
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * NamePool
+ *
+ * The identifiers of one compilation, each kept once and numbered from 0
+ * in the order they were first seen. The scanner interns every
+ * identifier it finds, straight from its input buffer, so a name seen
+ * before costs no allocation; the rest of the compiler then tells names
+ * apart by their numbers (see IdNode.nameId and SymTable).
+ *
+ * The pool is filled by the thread that scans. The tokens carry both the
+ * number and the pooled String, so other threads never need to call
+ * name while it is being filled.
+ */
+class NamePool {
+	/**
+	 * The number of "main", which is in every pool.
+	 */
+	static final int MAIN = 0;
+
+	private String[] names = new String[256];
+	private int size = 0;
+
+	// open addressing: number + 1 of the name in each slot, or 0
+	private int[] table = new int[512];
+	private int[] hashes = new int[256];
+
+	NamePool() {
+		intern("main");
+	}
+
+	/**
+	 * Returns the number of the name held in buf[start, start + length),
+	 * which must be ASCII.
+	 */
+	int intern(byte[] buf, int start, int length) {
+		int h = 0;
+		for (int k = start; k < start + length; k++) {
+			h = 31 * h + buf[k];
+		}
+		int mask = table.length - 1;
+		for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				String name = new String(buf, start, length,
+					java.nio.charset.StandardCharsets.ISO_8859_1);
+				return add(name, h, slot);
+			}
+			if (hashes[id] == h && matches(names[id], buf, start, length)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the name held in buf[start, start + length).
+	 */
+	int intern(char[] buf, int start, int length) {
+		int h = 0;
+		for (int k = start; k < start + length; k++) {
+			h = 31 * h + buf[k];
+		}
+		int mask = table.length - 1;
+		for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				return add(new String(buf, start, length), h, slot);
+			}
+			if (hashes[id] == h && matches(names[id], buf, start, length)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of the given name.
+	 */
+	int intern(String name) {
+		int h = name.hashCode();
+		int mask = table.length - 1;
+		for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (id < 0) {
+				return add(name, h, slot);
+			}
+			if (hashes[id] == h && names[id].equals(name)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the name with the given number.
+	 */
+	String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns how many names there are; their numbers are 0 to size - 1.
+	 */
+	int size() {
+		return size;
+	}
+
+	private int add(String name, int h, int slot) {
+		if (size == names.length) {
+			names = java.util.Arrays.copyOf(names, 2 * size);
+			hashes = java.util.Arrays.copyOf(hashes, 2 * size);
+		}
+		int id = size++;
+		names[id] = name;
+		hashes[id] = h;
+		table[slot] = id + 1;
+		if (2 * size > table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	private void rehash() {
+		table = new int[2 * table.length];
+		int mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	private static boolean matches(String name, char[] buf, int start,
+			int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int k = 0; k < length; k++) {
+			if (name.charAt(k) != buf[start + k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(String name, byte[] buf, int start,
+			int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int k = 0; k < length; k++) {
+			if (name.charAt(k) != buf[start + k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,302 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OutputCache
+ *
+ * An on-disk cache of compiler results, keyed by the SHA-256 of the
+ * compiler's fingerprint (see {@link #fingerprint}) and the source. Each
+ * entry is a directory named by its key that holds
+ *    out.s        the generated code
+ *    diagnostics  the warning and error messages
+ *    result       the P6.RESULT_* code
+ *
+ * Entries are written under a temporary name and then renamed into place,
+ * so readers never see half of one, and any number of compilers (threads
+ * or processes) can share a cache directory. A hit touches the entry's
+ * modification time; when the entries grow past the size cap the least
+ * recently used ones are removed, down to nine tenths of the cap, with a
+ * lock on the "lock" file held so only one compiler evicts at a time.
+ *
+ * The size of the entries is only counted from the directory on the first
+ * put; after that, each put adds its own size to the count, and the
+ * directory is listed again only once the count passes the cap. Entries
+ * other compilers store are not counted until then.
+ */
+public class OutputCache {
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final String LOCK_FILE = "lock";
+	private static final String TEMP_PREFIX = "tmp-";
+
+	// temporary directories older than this were left by a compiler that
+	// died mid-store
+	private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+
+	private static String fingerprint;
+
+	private Path dir;
+	private long maxBytes;
+
+	// size of the entries as of the last eviction plus what this cache
+	// has stored since, or -1 before the first put
+	private AtomicLong estimate = new AtomicLong(-1);
+
+	/**
+	 * A cached result.
+	 */
+	public static class Entry {
+		public final byte[] output;
+		public final byte[] diagnostics;
+		public final int resultCode;
+
+		public Entry(byte[] output, byte[] diagnostics, int resultCode) {
+			this.output = output;
+			this.diagnostics = diagnostics;
+			this.resultCode = resultCode;
+		}
+	}
+
+	/**
+	 * @param dir directory holding the cache; it is created if need be
+	 * @param maxBytes total size the entries are kept under
+	 */
+	public OutputCache(Path dir, long maxBytes) throws IOException {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		Files.createDirectories(dir);
+	}
+
+	/**
+	 * Returns the key of the given source.
+	 */
+	public static String key(String source) {
+		return key("file", source);
+	}
+
+	/**
+	 * Returns the key of something other than a whole source file, such
+	 * as a function, so that its entries never clash with those of files.
+	 * @param kind what the text is; it must not contain a NUL
+	 * @param text the text to key
+	 */
+	public static String key(String kind, String text) {
+		MessageDigest md = sha256();
+		md.update(fingerprint().getBytes(StandardCharsets.UTF_8));
+		md.update(kind.getBytes(StandardCharsets.UTF_8));
+		md.update((byte)0);
+		md.update(text.getBytes(StandardCharsets.UTF_8));
+		return hex(md.digest());
+	}
+
+	/**
+	 * Returns a hash of the compiler's class files, so that results cached
+	 * by one build of the compiler are never used by another.
+	 */
+	public static synchronized String fingerprint() {
+		if (fingerprint == null) {
+			MessageDigest md = sha256();
+			try {
+				Path classes = Paths.get(P6.class.getProtectionDomain()
+					.getCodeSource().getLocation().toURI());
+				List<Path> files = new ArrayList<Path>();
+				if (Files.isDirectory(classes)) {
+					DirectoryStream<Path> stream =
+						Files.newDirectoryStream(classes, "*.class");
+					for (Path file : stream) {
+						files.add(file);
+					}
+					stream.close();
+					Collections.sort(files);
+				} else {
+					files.add(classes);  // a jar
+				}
+				for (Path file : files) {
+					md.update(file.getFileName().toString()
+						.getBytes(StandardCharsets.UTF_8));
+					md.update(Files.readAllBytes(file));
+				}
+			} catch (Exception ex) {
+				// no way to tell builds apart, so never share entries
+				md.update(Long.toString(System.nanoTime())
+					.getBytes(StandardCharsets.UTF_8));
+			}
+			fingerprint = hex(md.digest());
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Looks up an entry, marking it as recently used.
+	 * @return the entry, or null if there is none
+	 */
+	public Entry get(String key) {
+		Path entry = dir.resolve(key);
+		try {
+			byte[] output = Files.readAllBytes(entry.resolve("out.s"));
+			byte[] diagnostics = Files.readAllBytes(entry.resolve("diagnostics"));
+			int resultCode = Integer.parseInt(new String(
+				Files.readAllBytes(entry.resolve("result")),
+				StandardCharsets.UTF_8).trim());
+			Files.setLastModifiedTime(entry,
+				FileTime.fromMillis(System.currentTimeMillis()));
+			return new Entry(output, diagnostics, resultCode);
+		} catch (IOException ex) {
+			// missing, or evicted while we were reading it
+			return null;
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds an entry, then evicts entries if the cache may be over its cap.
+	 */
+	public void put(String key, Entry value) throws IOException {
+		Path temp = Files.createTempDirectory(dir, TEMP_PREFIX);
+		try {
+			Files.write(temp.resolve("out.s"), value.output);
+			Files.write(temp.resolve("diagnostics"), value.diagnostics);
+			Files.write(temp.resolve("result"), Integer.toString(value.resultCode)
+				.getBytes(StandardCharsets.UTF_8));
+			Files.move(temp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			deleteTree(temp);
+			// another compiler stored the same entry first (Linux reports
+			// the rename onto its directory only as a FileSystemException)
+			if (ex instanceof FileAlreadyExistsException
+					|| ex instanceof DirectoryNotEmptyException
+					|| Files.isDirectory(dir.resolve(key))) {
+				return;
+			}
+			throw ex;
+		}
+		long size = value.output.length + value.diagnostics.length
+			+ Integer.toString(value.resultCode).length();
+		if (estimate.get() < 0 || estimate.addAndGet(size) > maxBytes) {
+			evict();
+		}
+	}
+
+	/**
+	 * Counts the entries, and if they are over the cap removes the least
+	 * recently used until the rest fit in nine tenths of it. Threads of
+	 * this JVM take turns on the monitor, since the file lock only keeps
+	 * other processes out.
+	 */
+	private void evict() throws IOException {
+		synchronized (OutputCache.class) {
+			FileChannel channel = FileChannel.open(dir.resolve(LOCK_FILE),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				channel.lock();
+
+				final Map<Path, Long> used = new HashMap<Path, Long>();
+				Map<Path, Long> sizes = new HashMap<Path, Long>();
+				long total = 0;
+				DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+				for (Path entry : stream) {
+					String name = entry.getFileName().toString();
+					if (name.equals(LOCK_FILE)) {
+						continue;
+					}
+					if (name.startsWith(TEMP_PREFIX)) {
+						deleteIfStale(entry);
+						continue;
+					}
+					try {
+						long size = 0;
+						for (String file : new String[] {
+								"out.s", "diagnostics", "result" }) {
+							size += Files.size(entry.resolve(file));
+						}
+						used.put(entry,
+							Files.getLastModifiedTime(entry).toMillis());
+						sizes.put(entry, size);
+						total += size;
+					} catch (IOException ex) {
+						// removed under us
+					}
+				}
+				stream.close();
+				if (total <= maxBytes) {
+					estimate.set(total);
+					return;
+				}
+				long target = maxBytes - maxBytes / 10;
+
+				List<Path> entries = new ArrayList<Path>(used.keySet());
+				Collections.sort(entries, new Comparator<Path>() {
+					public int compare(Path a, Path b) {
+						return Long.compare(used.get(a), used.get(b));
+					}
+				});
+				for (Path entry : entries) {
+					if (total <= target) {
+						break;
+					}
+					// take it out of sight first so readers find no entry
+					// rather than a partly deleted one
+					Path doomed = dir.resolve(TEMP_PREFIX
+						+ entry.getFileName());
+					try {
+						Files.move(entry, doomed, StandardCopyOption.ATOMIC_MOVE);
+						deleteTree(doomed);
+						total -= sizes.get(entry);
+					} catch (IOException ex) {
+						// try the next one
+					}
+				}
+				estimate.set(total);
+			} finally {
+				channel.close();  // also releases the lock
+			}
+		}
+	}
+
+	private static void deleteIfStale(Path temp) {
+		try {
+			long age = System.currentTimeMillis()
+				- Files.getLastModifiedTime(temp).toMillis();
+			if (age > STALE_TEMP_MILLIS) {
+				deleteTree(temp);
+			}
+		} catch (IOException ex) {
+			// someone else cleaned it up
+		}
+	}
+
+	private static void deleteTree(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			DirectoryStream<Path> stream = Files.newDirectoryStream(path);
+			for (Path child : stream) {
+				deleteTree(child);
+			}
+			stream.close();
+		}
+		Files.deleteIfExists(path);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);  // every JDK has SHA-256
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+}
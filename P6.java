@@ -1,4 +1,5 @@
 import java.io.*;
+import java.util.Arrays;
 
 import java_cup.runtime.*;
 
@@ -8,16 +9,71 @@ import java_cup.runtime.*;
  * There should be 2 command-line arguments:
  *    1. the file to be parsed
  *    2. the output MIPS file
+ * which may be preceded by the options
+ *    --stats <file>   write a JSON report of the time and memory spent in
+ *                     each phase to <file> (see CompileStats)
+ *    --cache <dir>    reuse the results of earlier compiles of the same
+ *                     source, and the code of unchanged functions, kept
+ *                     in <dir> (see OutputCache and FunctionCache)
+ *    --cache-size <n> keep the cache under <n> bytes; a suffix of k, m or
+ *                     g multiplies by 1024, 1024^2 or 1024^3
+ *    --max-errors <n> stop compiling after <n> errors
+ *    --pipeline       run the phases side by side on separate threads
+ *                     (see Pipeline)
+ *    --stream         compile each declaration as soon as it is parsed,
+ *                     without keeping the whole tree (see StreamCompiler)
+ *    --fast-lexer     scan with FastLexer instead of the JLex scanner
+ *    --packed-tokens  scan with FastLexer into a TokenStream before
+ *                     parsing
+ *    --parallel-lexer as --packed-tokens, but scan large inputs in chunks
+ *                     side by side (see ParallelLexer)
+ *    --mapped-input   read the input file through a memory map of it
+ *                     rather than a FileReader (see MappedSource)
+ *    --parallel-codegen
+ *                     generate the functions side by side (see
+ *                     ParallelCodeGen)
+ *    --parallel-analysis
+ *                     analyze the function bodies side by side (see
+ *                     ParallelAnalysis)
+ *
+ * or, to compile many files in one run (see BatchCompiler):
+ *    --batch <outdir> <infile>...
+ *
+ * or, to run or use a warm compiler behind a socket (see CompileDaemon):
+ *    --daemon <socket>
+ *    --client <socket> <infile> <outfile>
+ *
+ * or, to compile files again each time they are saved (see WatchCompiler):
+ *    --watch <infile> <outfile> [<infile> <outfile>]...
+ *
+ * or, to serve the compiler over HTTP and put load on it (see
+ * CompileServer):
+ *    --serve <port>
+ *    --load <port> <infile> <requests> <concurrency>
  *
  * The program opens the two files, creates a scanner and a parser, and
  * calls the parser.  If the parse is successful, then it will call name
  * analysis and type checking routines. If there is no error at the end,
  * it will generate MIPS code to the output file.
+ *
+ * All of the state of a run lives in the P6 instance's Compilation, so
+ * several instances can be processed at once on different threads.
  */
 public class P6 {
-	FileReader inFile;
+	Reader inFile;
+	private String infileName = "-";
+	private String infilePath;  // while inFile reads this file
 	private PrintWriter outFile;
+	private String statsFile;
+	private OutputCache cache;
+	private boolean pipelined = false;
+	private boolean streaming = false;
+	private boolean fastLexer = false;
+	private boolean packedTokens = false;
+	private boolean parallelLexer = false;
+	private boolean mappedInput = false;
 	private static PrintStream outStream = System.err;
+	private Compilation comp = new Compilation();
 
 	public static final int RESULT_CORRECT = 0;
 	public static final int RESULT_SYNTAX_ERROR = 1;
@@ -32,24 +88,92 @@ public class P6 {
 	public P6() {
 	}
 
+	/**
+	 * P6 constructor for clients that collect the warning and error
+	 * messages themselves instead of having them go to System.err.
+	 * @param diagnostics destination for warning and error messages
+	 */
+	public P6(PrintStream diagnostics) {
+		comp = new Compilation(diagnostics);
+	}
+
 	/**
 	 * If we are directly invoking P6 from the command line, this
 	 * is the command line to use. It shouldn't be invoked from
 	 * outside the class (hence the private constructor) because
 	 * it
-	 * @param args command line args array for [<infile> <outfile>]
+	 * @param args command line args array for [<options>] <infile> <outfile>
 	 */
 	private P6(String[] args) {
+		//Parse options
+		int k = 0;
+		String cacheDir = null;
+		long cacheSize = OutputCache.DEFAULT_MAX_BYTES;
+		while (k < args.length && args[k].startsWith("--")) {
+			if (args[k].equals("--stats") && k + 1 < args.length) {
+				setStatsFile(args[k + 1]);
+				k += 2;
+			} else if (args[k].equals("--cache") && k + 1 < args.length) {
+				cacheDir = args[k + 1];
+				k += 2;
+			} else if (args[k].equals("--cache-size") && k + 1 < args.length) {
+				cacheSize = parseSize(args[k + 1]);
+				k += 2;
+			} else if (args[k].equals("--pipeline")) {
+				setPipelined(true);
+				k++;
+			} else if (args[k].equals("--fast-lexer")) {
+				setFastLexer(true);
+				k++;
+			} else if (args[k].equals("--packed-tokens")) {
+				setPackedTokens(true);
+				k++;
+			} else if (args[k].equals("--parallel-lexer")) {
+				setParallelLexer(true);
+				k++;
+			} else if (args[k].equals("--mapped-input")) {
+				setMappedInput(true);
+				k++;
+			} else if (args[k].equals("--stream")) {
+				setStreaming(true);
+				k++;
+			} else if (args[k].equals("--parallel-codegen")) {
+				setParallelCodeGen(true);
+				k++;
+			} else if (args[k].equals("--parallel-analysis")) {
+				setParallelAnalysis(true);
+				k++;
+			} else if (args[k].equals("--max-errors") && k + 1 < args.length) {
+				try {
+					setMaxErrors(Integer.parseInt(args[k + 1]));
+				} catch (NumberFormatException e) {
+					pukeAndDie("bad error limit " + args[k + 1]);
+				}
+				k += 2;
+			} else {
+				pukeAndDie("unknown option " + args[k]);
+			}
+		}
+		if (cacheDir != null) {
+			try {
+				setCache(new OutputCache(
+					java.nio.file.Paths.get(cacheDir), cacheSize));
+				setFunctionCache(new FunctionCache(cache));
+			} catch (IOException e) {
+				pukeAndDie("Could not create cache directory " + cacheDir);
+			}
+		}
+
 		//Parse arguments
-		if (args.length < 2) {
+		if (args.length - k < 2) {
 			String msg = "please supply name of the input file "
 				+ "and name of file for assembly output.";
 			pukeAndDie(msg);
 		}
 
 		try {
-			setInfile(args[0]);
-			setOutfile(args[1]);
+			setInfile(args[k]);
+			setOutfile(args[k + 1]);
 		} catch(BadInfileException e) {
 			pukeAndDie(e.getMessage());
 		} catch(BadOutfileException e) {
@@ -64,24 +188,177 @@ public class P6 {
 	public void setInfile(String filename) throws BadInfileException{
 		try {
 			inFile = new FileReader(filename);
+			infileName = filename;
+			infilePath = filename;
 		} catch (FileNotFoundException ex) {
 			throw new BadInfileException(ex, filename);
 		}
 	}
 
+	/**
+	 * Source code read from a reader instead of a file. The reader is
+	 * closed by {@link cleanup}.
+	 * @param source reader holding the source code
+	 */
+	public void setInput(Reader source) {
+		inFile = source;
+		infilePath = null;
+	}
+
 	/**
 	 * Text file output
 	 * @param filename path to destination file
 	 */
 	public void setOutfile(String filename) throws BadOutfileException{
 		try {
-			Codegen.p = new PrintWriter(filename);
-			outFile = Codegen.p;
+			outFile = new PrintWriter(filename);
+			comp.setOut(outFile);
 		} catch (FileNotFoundException ex) {
 			throw new BadOutfileException(ex, filename);
 		}
 	}
 
+	/**
+	 * File to write the JSON report of the compilation's measurements to
+	 * when {@link run} finishes. Setting it turns on the measurements.
+	 * @param filename path to the report
+	 */
+	public void setStatsFile(String filename) {
+		statsFile = filename;
+		comp.setStats(new CompileStats());
+	}
+
+	/**
+	 * Cache to look results up in before compiling, and to store them in
+	 * after.
+	 * @param cache the cache, or null to always compile
+	 */
+	public void setCache(OutputCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Cache of the code of single functions, which lets a compile of a
+	 * changed file skip generating the functions that did not change.
+	 * @param cache the cache, or null to generate every function
+	 */
+	public void setFunctionCache(FunctionCache cache) {
+		comp.setFunctionCache(cache);
+	}
+
+	/**
+	 * Number of errors after which the compile stops, so that very bad
+	 * input fails fast.
+	 * @param maxErrors the limit, or 0 for none
+	 */
+	public void setMaxErrors(int maxErrors) {
+		comp.setMaxErrors(maxErrors);
+	}
+
+	/**
+	 * Whether to run the phases as a pipeline, each declaration moving on
+	 * to the next phase as soon as it is through the one before. The
+	 * result is the same either way.
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * Whether to scan with FastLexer, which reads the input as bytes,
+	 * instead of with the JLex-generated Yylex. The tokens and messages are
+	 * the same either way.
+	 */
+	public void setFastLexer(boolean fastLexer) {
+		this.fastLexer = fastLexer;
+	}
+
+	/**
+	 * Whether to scan the whole input with FastLexer into a TokenStream
+	 * before parsing, rather than a Symbol at a time as the parser asks.
+	 * The tokens and messages are the same either way.
+	 */
+	public void setPackedTokens(boolean packedTokens) {
+		this.packedTokens = packedTokens;
+	}
+
+	/**
+	 * Whether to scan the whole input into a TokenStream before parsing,
+	 * in chunks side by side if it is large. The tokens and messages are
+	 * the same either way.
+	 */
+	public void setParallelLexer(boolean parallelLexer) {
+		this.parallelLexer = parallelLexer;
+	}
+
+	/**
+	 * Whether to read the input file through a memory map of it, as bytes
+	 * with no charset decoding, rather than through a FileReader. Input
+	 * from a reader, and input read whole for the cache, are not mapped.
+	 * The tokens and messages are the same either way.
+	 */
+	public void setMappedInput(boolean mappedInput) {
+		this.mappedInput = mappedInput;
+	}
+
+	/**
+	 * Whether to compile in a single pass, each declaration going through
+	 * all of the phases as soon as it is parsed and then being dropped, so
+	 * that the whole tree is never held in memory. The result is the same
+	 * either way.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Whether to generate the code of the functions side by side. The
+	 * code is the same either way.
+	 */
+	public void setParallelCodeGen(boolean parallel) {
+		comp.setParallelCodeGen(parallel);
+	}
+
+	/**
+	 * Whether to do name analysis and type checking of the function
+	 * bodies side by side. The diagnostics are the same either way.
+	 */
+	public void setParallelAnalysis(boolean parallel) {
+		comp.setParallelAnalysis(parallel);
+	}
+
+	/**
+	 * Parses a byte count such as 4096, 512k or 64m, which must be more
+	 * than zero.
+	 */
+	@SuppressWarnings("fallthrough")
+	private long parseSize(String size) {
+		String digits = size;
+		long unit = 1;
+		switch (size.isEmpty() ? ' '
+				: Character.toLowerCase(size.charAt(size.length() - 1))) {
+		case 'g':
+			unit *= 1024;
+			// fall through
+		case 'm':
+			unit *= 1024;
+			// fall through
+		case 'k':
+			unit *= 1024;
+			digits = size.substring(0, size.length() - 1);
+		}
+		try {
+			long bytes = Long.parseLong(digits);
+			if (bytes > 0 && bytes <= Long.MAX_VALUE / unit) {
+				return bytes * unit;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		pukeAndDie("bad cache size " + size);
+		return 0;
+	}
+
 	/**
 	 * Perform cleanup at the end of parsing. This should be called
 	 * after both good and bad input so that the files are all in a
@@ -127,66 +404,351 @@ public class P6 {
 	/** the parser will return a Symbol whose value
 	 * field is the translation of the root nonterminal
 	 * (i.e., of the nonterminal "program")
+	 * @param declSink if not null, is given each top-level declaration
+	 *                 as soon as it has been parsed, and the program's
+	 *                 DeclListNode is then left empty
 	 * @return root of the CFG
 	 */
-	private Symbol parseCFG() {
+	Symbol parseCFG(java.util.function.Consumer<DeclNode> declSink) {
+		Compilation prev = Compilation.enter(comp);
 		try {
-			parser P = new parser(new Yylex(inFile));
+			Scanner scanner = scanner();
+			if (CompilerMetrics.registered()) {
+				scanner = CompilerMetrics.get().countTokens(scanner);
+			}
+			if (comp.stats() != null) {
+				scanner = comp.stats().countTokens(scanner);
+			}
+			parser P = new parser(scanner);
+			P.declSink = declSink;
+			P.keepDecls = declSink == null;  // the sink takes them over
 			return P.parse();
+		} catch (TooManyErrorsException e) {
+			throw e;
 		} catch (Exception e) {
 			return null;
+		} finally {
+			Compilation.leave(prev);
+		}
+	}
+
+	/**
+	 * Returns the scanner of the input, after giving the compilation's
+	 * LineTable the input. A FastLexer reads the whole input at once as
+	 * bytes, straight from the file if there is one. Yylex reads a file as
+	 * it goes, and the table reads it again only if it needs to; input
+	 * from a reader is read whole, and its characters are one byte each in
+	 * the table (every one that Yylex takes in a token is ASCII). With
+	 * mappedInput, either one reads a file through a MappedSource.
+	 */
+	private Scanner scanner() throws IOException {
+		LineTable lines = comp.lines();
+		if (!fastLexer && !packedTokens && !parallelLexer) {
+			if (infilePath != null) {
+				java.nio.file.Path path = java.nio.file.Paths.get(infilePath);
+				lines.reset(path);
+				return new Yylex(mappedInput ? MappedSource.reader(path) : inFile,
+					lines, comp.names());
+			}
+			String text = readAll(inFile);
+			byte[] source = text.getBytes(
+				java.nio.charset.StandardCharsets.ISO_8859_1);
+			lines.reset(source, source.length);
+			return new Yylex(new StringReader(text), lines, comp.names());
+		}
+		byte[] source;
+		if (infilePath != null) {
+			java.nio.file.Path path = java.nio.file.Paths.get(infilePath);
+			source = mappedInput ? MappedSource.bytes(path)
+				: java.nio.file.Files.readAllBytes(path);
+		} else {
+			source = readAll(inFile).getBytes(
+				java.nio.charset.StandardCharsets.UTF_8);
+		}
+		lines.reset(source, source.length);
+		if (parallelLexer) {
+			return ParallelLexer.tokens(lines, comp.names())
+				.cursor(comp.names());
+		}
+		FastLexer lexer = new FastLexer(lines, comp.names());
+		if (packedTokens) {
+			return lexer.tokens().cursor(comp.names());
 		}
+		return lexer;
 	}
 
+	/**
+	 * A phase of {@link process} in progress: its flight recorder event,
+	 * and its measurements if those are being collected.
+	 */
+	class PhaseMark {
+		CompilerEvents.Phase event;
+		CompileStats.Phase stats;
+		String name;
+		long start = System.nanoTime();
+
+		PhaseMark(String name) {
+			this.name = name;
+			if (CompilerEvents.recording()) {
+				event = new CompilerEvents.Phase();
+				event.phase = name;
+				event.file = infileName;
+				event.begin();
+			}
+			if (comp.stats() != null) {
+				stats = comp.stats().startPhase(name);
+			}
+		}
+
+		void end() {
+			CompilerMetrics.get().phase(name, System.nanoTime() - start);
+			if (event != null) {
+				event.commit();
+			}
+			if (stats != null) {
+				stats.end();
+			}
+		}
+	}
+
+	PhaseMark startPhase(String name) {
+		return new PhaseMark(name);
+	}
+
+	static void endPhase(PhaseMark phase) {
+		phase.end();
+	}
+
+	/**
+	 * Compiles the input, or replays the result of compiling the same
+	 * source before if it is in the cache.
+	 * @return one of the RESULT_* codes
+	 */
 	public int process() {
-		Symbol cfgRoot = parseCFG();
+		boolean succeeded = false;
+		try {
+			int resultCode = processInput();
+			succeeded = resultCode == RESULT_CORRECT;
+			return resultCode;
+		} finally {
+			comp.publishMetrics();
+			CompilerMetrics.get().compiled(succeeded);
+		}
+	}
+
+	private int processInput() {
+		if (cache == null) {
+			return runPhases();
+		}
+
+		String key;
+		try {
+			String source = readAll(inFile);
+			inFile.close();
+			inFile = new StringReader(source);
+			infilePath = null;
+			// a limit cuts the diagnostics short, so it is part of the key
+			key = comp.maxErrors() == 0 ? OutputCache.key(source)
+				: OutputCache.key("file max-errors=" + comp.maxErrors(), source);
+		} catch (IOException e) {
+			comp.diagnostics().println("Could not read " + infileName);
+			return P6.RESULT_OTHER_ERROR;
+		}
 
-		ProgramNode astRoot = (ProgramNode)cfgRoot.value;
-		if (ErrMsg.getErr()) {
-			return P6.RESULT_SYNTAX_ERROR;
+		PhaseMark phase = startPhase("cache");
+		OutputCache.Entry hit;
+		try {
+			hit = cache.get(key);
+			if (hit != null) {
+				comp.out().print(new String(hit.output,
+					java.nio.charset.StandardCharsets.UTF_8));
+				comp.diagnostics().write(hit.diagnostics, 0,
+					hit.diagnostics.length);
+				if (comp.stats() != null) {
+					comp.stats().setCached();
+				}
+			}
+		} finally {
+			endPhase(phase);
+		}
+		if (hit != null) {
+			return hit.resultCode;
 		}
 
-		astRoot.nameAnalysis();	 // perform name analysis
-		if (ErrMsg.getErr()) {
-			return P6.RESULT_NAME_ANALYSIS_ERROR;
+		// capture what the compile writes, to store it as well
+		PrintWriter realOut = comp.out();
+		PrintStream realDiagnostics = comp.diagnostics();
+		StringWriter output = new StringWriter();
+		ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+		comp.setOut(new PrintWriter(output));
+		comp.setDiagnostics(new PrintStream(diagnostics, true));
+		int resultCode;
+		try {
+			resultCode = runPhases();
+		} finally {
+			comp.out().flush();
+			comp.setOut(realOut);
+			comp.setDiagnostics(realDiagnostics);
 		}
+		realOut.print(output.toString());
+		realDiagnostics.write(diagnostics.toByteArray(), 0, diagnostics.size());
 
-		astRoot.typeCheck();
-		if (ErrMsg.getErr()) {
-			return P6.RESULT_TYPE_ERROR;
+		try {
+			cache.put(key, new OutputCache.Entry(output.toString().getBytes(
+				java.nio.charset.StandardCharsets.UTF_8),
+				diagnostics.toByteArray(), resultCode));
+		} catch (IOException e) {
+			// the result is still good, it just won't be reused
+			realDiagnostics.println("Could not write to the cache: "
+				+ e.getMessage());
 		}
+		return resultCode;
+	}
 
-		//////////////////////////
-		// TODO: Calling codeGen   //
-		//////////////////////////
-		
-		astRoot.codeGen();
-		if (ErrMsg.getErr()) {
-			return P6.RESULT_TYPE_ERROR;
+	private static String readAll(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[8192];
+		int n;
+		while ((n = reader.read(buf)) != -1) {
+			sb.append(buf, 0, n);
 		}
-		
-		
-		//TODO REMOVE UNPARSE
-		//astRoot.unparse(outFile, 0);
-		return P6.RESULT_CORRECT;
+		return sb.toString();
+	}
+
+	/**
+	 * Runs the phases of the compiler over the input. The diagnostics are
+	 * printed in one batch at the end.
+	 * @return one of the RESULT_* codes
+	 */
+	private int runPhases() {
+		if (pipelined) {
+			try {
+				return new Pipeline(this, comp).run();
+			} finally {
+				comp.flushDiagnostics();
+			}
+		}
+		if (streaming) {
+			try {
+				return new StreamCompiler(this, comp).run();
+			} finally {
+				comp.flushDiagnostics();
+			}
+		}
+
+		int failure = P6.RESULT_SYNTAX_ERROR;  // result if this phase fails
+		try {
+			PhaseMark phase = startPhase("parse");
+			Symbol cfgRoot = parseCFG(null);
+			endPhase(phase);
+
+			if (cfgRoot == null || comp.hasErrors()) {
+				return P6.RESULT_SYNTAX_ERROR;
+			}
+			ProgramNode astRoot = (ProgramNode)cfgRoot.value;
+
+			failure = P6.RESULT_NAME_ANALYSIS_ERROR;
+			phase = startPhase("nameAnalysis");
+			astRoot.nameAnalysis(comp);	 // perform name analysis
+			endPhase(phase);
+			if (comp.hasErrors()) {
+				return P6.RESULT_NAME_ANALYSIS_ERROR;
+			}
+
+			failure = P6.RESULT_TYPE_ERROR;
+			phase = startPhase("typeCheck");
+			astRoot.typeCheck(comp);
+			endPhase(phase);
+			if (comp.hasErrors()) {
+				return P6.RESULT_TYPE_ERROR;
+			}
+
+			//////////////////////////
+			// TODO: Calling codeGen   //
+			//////////////////////////
+			
+			phase = startPhase("codeGen");
+			astRoot.codeGen(comp);
+			endPhase(phase);
+			if (comp.hasErrors()) {
+				return P6.RESULT_TYPE_ERROR;
+			}
+			
+			
+			//TODO REMOVE UNPARSE
+			//astRoot.unparse(outFile, 0);
+			return P6.RESULT_CORRECT;
+		} catch (TooManyErrorsException e) {
+			comp.flushDiagnostics();
+			comp.diagnostics().println(e.getMessage());
+			return failure;
+		} finally {
+			comp.flushDiagnostics();
+		}
+	}
+
+	/**
+	 * Compiles source held in memory, with no files read or written.
+	 * Any number of threads may call it at once.
+	 * @param source the egg program
+	 * @return the result code, generated code and diagnostics
+	 */
+	public static CompileResult compile(CharSequence source) {
+		CompilerMetrics.register();
+		P6 instance = new P6(new PrintStream(OutputStream.nullOutputStream()));
+		StringWriter assembly = new StringWriter();
+		instance.setInput(new StringReader(source.toString()));
+		instance.comp.setOut(new PrintWriter(assembly));
+		int resultCode = instance.process();
+		instance.comp.out().flush();
+		return new CompileResult(resultCode, assembly.toString(),
+			instance.comp.reported());
 	}
 
 	public void run() {
 		int resultCode = process();
+		writeStats(resultCode);
 		if (resultCode == RESULT_CORRECT) {
 			cleanup();
 			return;
 		}
 
+		pukeAndDie(resultMessage(resultCode), resultCode);
+	}
+
+	/**
+	 * Writes the measurements report, if one was asked for.
+	 */
+	private void writeStats(int resultCode) {
+		if (statsFile == null) {
+			return;
+		}
+		try {
+			PrintWriter p = new PrintWriter(statsFile);
+			comp.stats().writeJson(p, infileName, resultCode);
+			p.close();
+		} catch (FileNotFoundException ex) {
+			outStream.println("Could not open " + statsFile + " for writing");
+		}
+	}
+
+	/**
+	 * Describes one of the RESULT_* codes.
+	 * @param resultCode value returned by {@link process}
+	 * @return message for the code
+	 */
+	public static String resultMessage(int resultCode) {
 		switch(resultCode) {
+		case RESULT_CORRECT:
+			return "Compiled";
 		case RESULT_SYNTAX_ERROR:
-			pukeAndDie("Syntax error", resultCode);
+			return "Syntax error";
 		case RESULT_TYPE_ERROR:
-			pukeAndDie("Type checking error", resultCode);
+			return "Type checking error";
 		case RESULT_NAME_ANALYSIS_ERROR:
-			pukeAndDie("Name analysis error", resultCode);
+			return "Name analysis error";
 		default:
-			pukeAndDie("Type checking error", RESULT_OTHER_ERROR);
+			return "Error";
 		}
 	}
 
@@ -221,6 +783,40 @@ public class P6 {
 	}
 
 	public static void main(String[] args) {
+		String mode = args.length > 0 ? args[0] : "";
+		String[] modeArgs = args.length > 0
+			? Arrays.copyOfRange(args, 1, args.length) : args;
+		try {
+			switch (mode) {
+			case "--batch":
+				System.exit(BatchCompiler.fromArgs(modeArgs).run());
+			case "--daemon":
+				if (modeArgs.length < 1) {
+					throw new IllegalArgumentException(
+						"please supply the path of the socket to listen on.");
+				}
+				new CompileDaemon(java.nio.file.Paths.get(modeArgs[0])).serve();
+				return;
+			case "--client":
+				System.exit(CompileDaemon.client(modeArgs));
+			case "--watch":
+				new WatchCompiler(modeArgs).watch();
+				return;
+			case "--serve":
+				if (modeArgs.length < 1) {
+					throw new IllegalArgumentException(
+						"please supply the port to listen on.");
+				}
+				new CompileServer(Integer.parseInt(modeArgs[0])).serve();
+				return;
+			case "--load":
+				System.exit(CompileServer.load(modeArgs));
+			}
+		} catch (Exception e) {
+			outStream.println(e.getMessage());
+			System.exit(RESULT_OTHER_ERROR);
+		}
+
 		P6 instance = new P6(args);
 		instance.run();
 	}
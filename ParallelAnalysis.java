@@ -0,0 +1,176 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelAnalysis
+ *
+ * Name analysis and type checking with the function bodies done side by
+ * side on the common ForkJoinPool.
+ *
+ * Name analysis takes two steps. First, on the calling thread, the
+ * globals, struct definitions and function signatures (name and formals)
+ * are processed in order, as sequential name analysis would. The global
+ * scope is then complete and no longer changes, and every function body
+ * is analyzed in a table of its own (see SymTable.bodyTable) whose
+ * outermost scope holds the function's formals and behind which the
+ * global scope is seen as it was just after the function's declaration,
+ * so a body still cannot use a global declared after it.
+ *
+ * Type checking only reads the symbols, so the declarations are simply
+ * checked side by side.
+ *
+ * Each declaration reports to a Compilation of its own, and their
+ * diagnostics are merged in declaration order, so the messages are the
+ * same, in the same order, as those of the sequential phases. Each of
+ * those has the error limit of the compilation, so a declaration stops
+ * once it alone has reached it; the merge stops at the limit overall.
+ */
+class ParallelAnalysis {
+	private ParallelAnalysis() {
+	}
+
+	/**
+	 * The work of one phase on one declaration.
+	 */
+	private abstract static class Part extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		Compilation comp;
+		CompileStats.Work work;
+
+		Part(Compilation parent) {
+			comp = new Compilation(
+				new PrintStream(OutputStream.nullOutputStream()));
+			comp.setStats(parent.stats());
+			comp.setLines(parent.lines());
+			comp.setMaxErrors(parent.maxErrors());
+			if (parent.stats() != null) {
+				work = parent.stats().work();
+			}
+		}
+
+		abstract void run();
+
+		protected void compute() {
+			Compilation prev = Compilation.enter(comp);
+			if (work != null) {
+				work.begin();
+			}
+			try {
+				run();
+			} catch (TooManyErrorsException e) {
+				// the merge stops at the same diagnostic
+			} finally {
+				if (work != null) {
+					work.end();
+				}
+				Compilation.leave(prev);
+			}
+		}
+	}
+
+	/**
+	 * Name analysis of the given declarations of a program, followed by
+	 * the check for main, reporting to comp.
+	 */
+	static void nameAnalysis(List<DeclNode> decls, final Compilation comp) {
+		final SymTable symTab = new SymTable();
+		List<Part> parts = new ArrayList<Part>();
+		// by declaration; null for one that is not a function, or whose
+		// signature hit the error limit
+		final Part[] bodies = new Part[decls.size()];
+
+		for (int k = 0; k < decls.size(); k++) {
+			final int index = k;
+			final DeclNode decl = decls.get(k);
+			Part part = new Part(comp) {
+				void run() {
+					symTab.startDecl(index);
+					if (decl instanceof FnDeclNode) {
+						((FnDeclNode)decl).nameAnalysisSignature(symTab, true);
+						final IntMap<Sym> scope = symTab.currentScope();
+						removeScope(symTab);
+						bodies[index] = new Part(comp) {
+							void run() {
+								((FnDeclNode)decl).nameAnalysisBody(
+									symTab.bodyTable(index, scope));
+							}
+						};
+					} else {
+						DeclListNode.nameAnalysis(decl, symTab, symTab, true);
+					}
+				}
+			};
+			part.compute();  // on this thread, in order
+			parts.add(part);
+		}
+
+		// each body reports after the signature of its declaration
+		List<Part> toRun = new ArrayList<Part>();
+		for (Part body : bodies) {
+			if (body != null) {
+				toRun.add(body);
+			}
+		}
+		ForkJoinTask.invokeAll(toRun);
+		try {
+			for (int k = 0; k < decls.size(); k++) {
+				merge(parts.get(k), comp);
+				if (bodies[k] != null) {
+					merge(bodies[k], comp);
+				}
+			}
+		} finally {
+			// only now, since the global table counts the lookups of every
+			// signature in the compilation of the first to use it
+			publishMetrics(parts);
+			publishMetrics(toRun);
+		}
+		ProgramNode.checkMain(symTab);
+	}
+
+	/**
+	 * Type checking of the given declarations, reporting to comp.
+	 */
+	static void typeCheck(List<DeclNode> decls, Compilation comp) {
+		List<Part> parts = new ArrayList<Part>();
+		for (final DeclNode decl : decls) {
+			parts.add(new Part(comp) {
+				void run() {
+					decl.typeCheck();
+				}
+			});
+		}
+		ForkJoinTask.invokeAll(parts);
+		try {
+			for (Part part : parts) {
+				merge(part, comp);
+			}
+		} finally {
+			publishMetrics(parts);
+		}
+	}
+
+	private static void merge(Part part, Compilation comp) {
+		for (Diagnostic diagnostic : part.comp.reported()) {
+			comp.report(diagnostic);
+		}
+	}
+
+	private static void publishMetrics(List<Part> parts) {
+		for (Part part : parts) {
+			part.comp.publishMetrics();
+		}
+	}
+
+	private static void removeScope(SymTable symTab) {
+		try {
+			symTab.removeScope();
+		} catch (EmptySymTableException ex) {
+			System.err.println("Unexpected EmptySymTableException " +
+				" in ParallelAnalysis.nameAnalysis");
+			System.exit(-1);
+		}
+	}
+}
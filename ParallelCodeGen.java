@@ -0,0 +1,92 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelCodeGen
+ *
+ * Generates the code of a program's declarations side by side on the
+ * common ForkJoinPool. Each declaration is generated by a Compilation of
+ * its own, into its own buffer. Before any of them runs, each is given
+ * the label numbers it will take (see DeclNode.labelCount), starting just
+ * past those of the declarations before it, so the buffers are joined in
+ * declaration order as they are and the code is byte for byte what
+ * generating the declarations one after another would give.
+ */
+class ParallelCodeGen {
+	private ParallelCodeGen() {
+	}
+
+	/**
+	 * The code generation of one declaration.
+	 */
+	private static class Part extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		DeclNode decl;
+		int firstLabel;
+		Compilation comp;
+		CompileStats.Work work;
+		StringWriter code = new StringWriter();
+
+		Part(DeclNode decl, Compilation parent, int firstLabel) {
+			this.decl = decl;
+			this.firstLabel = firstLabel;
+			comp = new Compilation(
+				new PrintStream(OutputStream.nullOutputStream()));
+			comp.setOut(new PrintWriter(code));
+			comp.setStats(parent.stats());
+			comp.setLines(parent.lines());
+			comp.setFunctionCache(parent.functionCache());
+			comp.reserveLabels(firstLabel);
+			if (parent.stats() != null) {
+				work = parent.stats().work();
+			}
+		}
+
+		protected void compute() {
+			Compilation prev = Compilation.enter(comp);
+			if (work != null) {
+				work.begin();
+			}
+			try {
+				decl.codeGen();
+				comp.out().flush();
+			} finally {
+				if (work != null) {
+					work.end();
+				}
+				comp.publishMetrics();
+				Compilation.leave(prev);
+			}
+		}
+	}
+
+	/**
+	 * Writes the code for the given declarations to the output of comp.
+	 */
+	static void generate(List<DeclNode> decls, Compilation comp) {
+		List<Part> parts = new ArrayList<Part>();
+		int label = comp.reserveLabels(0);
+		for (DeclNode decl : decls) {
+			parts.add(new Part(decl, comp, label));
+			label += decl.labelCount();
+		}
+		ForkJoinTask.invokeAll(parts);
+
+		for (Part part : parts) {
+			for (Diagnostic diagnostic : part.comp.reported()) {
+				comp.report(diagnostic);
+			}
+			int labels = part.comp.reserveLabels(0) - part.firstLabel;
+			int first = comp.reserveLabels(labels);
+			String code = part.code.toString();
+			if (first != part.firstLabel) {
+				// a declaration before it took other than the labels it
+				// was counted for; this keeps the numbering right anyway
+				code = FunctionCache.renumber(code, first - part.firstLabel);
+			}
+			comp.out().print(code);
+		}
+	}
+}
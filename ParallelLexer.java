@@ -0,0 +1,119 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParallelLexer
+ *
+ * Scans a large input into a TokenStream in chunks, side by side on the
+ * common ForkJoinPool.
+ *
+ * The chunks are cut just after newlines. No egg token, comment or
+ * string literal (bad ones included) can go on past a newline, so the
+ * scan of the whole input is just after one in the same state as at the
+ * start, with nothing pending. Each chunk is scanned by a FastLexer of
+ * its own, into a NamePool and a LineTable of its own (which only
+ * records the chunk's unterminated string literals; the positions are
+ * offsets into the whole input either way). The chunk streams are then
+ * joined in order, each with its names interned into the compilation's
+ * pool, which numbers them in the order they first appear as a scan of
+ * the whole would. The joined stream has the same tokens and messages as
+ * that scan, and stops where it would stop.
+ */
+class ParallelLexer {
+	// the smallest chunk worth a task of its own
+	static final int MIN_CHUNK = 64 * 1024;
+
+	private ParallelLexer() {
+	}
+
+	/**
+	 * The scan of one chunk.
+	 */
+	private static class Part extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		NamePool names = new NamePool();
+		FastLexer lexer;
+		TokenStream tokens;
+		CompileStats.Work work;
+
+		Part(LineTable lines, int start, int end) {
+			lexer = new FastLexer(new LineTable(lines.source(), lines.length()),
+				start, end, names);
+			CompileStats stats = Compilation.current().stats();
+			if (stats != null) {
+				work = stats.work();
+			}
+		}
+
+		protected void compute() {
+			if (work != null) {
+				work.begin();
+			}
+			try {
+				tokens = lexer.tokens();
+			} finally {
+				if (work != null) {
+					work.end();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scans the input of lines in chunks of about a core's share of it,
+	 * but no smaller than MIN_CHUNK.
+	 * @param lines table of the input, which holds it
+	 * @param names pool of the compilation
+	 */
+	static TokenStream tokens(LineTable lines, NamePool names) {
+		int chunk = Math.max(MIN_CHUNK,
+			lines.length() / Runtime.getRuntime().availableProcessors() + 1);
+		return tokens(lines, names, chunk);
+	}
+
+	/**
+	 * Scans the input of lines in chunks of at least chunkSize bytes (but
+	 * the last).
+	 * @param lines table of the input, which holds it
+	 * @param names pool of the compilation
+	 */
+	static TokenStream tokens(LineTable lines, NamePool names,
+			int chunkSize) {
+		byte[] buf = lines.source();
+		int length = lines.length();
+		List<Part> parts = new ArrayList<Part>();
+		int start = 0;
+		while (start < length) {
+			int end = start + chunkSize;
+			while (end < length && buf[end - 1] != '\n') {
+				end++;
+			}
+			end = Math.min(end, length);
+			parts.add(new Part(lines, start, end));
+			start = end;
+		}
+		if (parts.size() <= 1) {
+			return new FastLexer(lines, names).tokens();
+		}
+		ForkJoinTask.invokeAll(parts);
+
+		TokenStream tokens = new TokenStream(lines, length / 3);
+		for (int p = 0; p < parts.size(); p++) {
+			Part part = parts.get(p);
+			int[] nameMap = new int[part.names.size()];
+			for (int id = 0; id < nameMap.length; id++) {
+				nameMap[id] = names.intern(part.names.name(id));
+			}
+			tokens.append(part.tokens, nameMap);
+			if (part.tokens.failure() != null) {
+				return tokens;
+			}
+			if (p == parts.size() - 1) {
+				int k = part.tokens.size() - 1;  // its EOF
+				tokens.add(sym.EOF, part.tokens.offset(k), 0, 0);
+			}
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,258 @@
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import java_cup.runtime.*;
+
+/**
+ * Pipeline
+ *
+ * Runs the phases of one compilation at the same time, each on its own
+ * thread: as soon as the parser finishes a top-level declaration it is
+ * queued for name analysis, then for type checking, then for code
+ * generation. The stages are connected by bounded queues, so a fast
+ * parser cannot run far ahead of the rest.
+ *
+ * The result is the same, byte for byte, as running the phases one
+ * after another (see P6.runPhases):
+ *   - each stage works on every declaration, as its phase would, but
+ *     stops passing them on at its first error, so no later phase sees a
+ *     declaration that an earlier one rejected;
+ *   - each stage reports to a Compilation of its own, and its diagnostics
+ *     are only moved to the real compilation once every earlier phase has
+ *     finished without error;
+ *   - the code is generated into a buffer that is written out only if
+ *     every phase succeeds.
+ */
+class Pipeline {
+	private static final int QUEUE_SIZE = 64;
+
+	// put on a queue after the last declaration
+	private static final Object END = new Object();
+
+	private P6 p6;
+	private Compilation comp;
+	private StringWriter code = new StringWriter();
+
+	/**
+	 * @param p6 compiler whose input to parse
+	 * @param comp compilation of p6
+	 */
+	Pipeline(P6 p6, Compilation comp) {
+		this.p6 = p6;
+		this.comp = comp;
+	}
+
+	/**
+	 * One phase, run on its own thread over the declarations from its
+	 * input queue. While it has reported no error, the declarations go on
+	 * to its output queue, if it has one. A stage keeps taking
+	 * declarations even after it has stopped working on them (when it
+	 * failed or hit the error limit), so the stages before it are never
+	 * blocked.
+	 */
+	private abstract class Stage extends Thread {
+		Compilation stageComp = new Compilation(
+			new PrintStream(OutputStream.nullOutputStream()));
+		BlockingQueue<Object> in = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+		BlockingQueue<Object> out;
+		Throwable failure;
+
+		Stage(String name, BlockingQueue<Object> out) {
+			super(name);
+			this.out = out;
+			stageComp.setStats(comp.stats());
+			stageComp.setLines(comp.lines());
+			stageComp.setMaxErrors(comp.maxErrors());
+		}
+
+		/**
+		 * Runs the phase over one declaration.
+		 */
+		abstract void process(DeclNode decl);
+
+		/**
+		 * Called once after the last declaration.
+		 */
+		void finish() {
+		}
+
+		public void run() {
+			Compilation prev = Compilation.enter(stageComp);
+			P6.PhaseMark phase = null;
+			boolean stopped = false;
+			try {
+				phase = p6.startPhase(getName());
+				Object item;
+				while ((item = in.take()) != END) {
+					if (stopped) {
+						continue;
+					}
+					try {
+						process((DeclNode)item);
+						if (out != null && !stageComp.hasErrors()) {
+							out.put(item);
+						}
+					} catch (TooManyErrorsException e) {
+						stopped = true;
+					} catch (InterruptedException e) {
+						throw e;
+					} catch (Throwable e) {
+						failure = e;
+						stopped = true;
+					}
+				}
+				if (!stopped) {
+					try {
+						finish();
+					} catch (TooManyErrorsException e) {
+						// it is in the diagnostics
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				// the later stages wait for it, however this one ended
+				putEnd();
+				if (phase != null) {
+					P6.endPhase(phase);
+				}
+				stageComp.publishMetrics();
+				Compilation.leave(prev);
+			}
+		}
+
+		/**
+		 * Puts END on the output queue, even if this thread has been
+		 * interrupted.
+		 */
+		private void putEnd() {
+			if (out == null) {
+				return;
+			}
+			boolean interrupted = Thread.interrupted();
+			while (true) {
+				try {
+					out.put(END);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Compiles the input of p6.
+	 * @return one of the P6.RESULT_* codes
+	 */
+	int run() {
+		final Stage codeGen = new Stage("codeGen", null) {
+			void process(DeclNode decl) {
+				decl.codeGen();
+			}
+		};
+		codeGen.stageComp.setOut(new PrintWriter(code));
+		codeGen.stageComp.setFunctionCache(comp.functionCache());
+
+		final Stage typeCheck = new Stage("typeCheck", codeGen.in) {
+			void process(DeclNode decl) {
+				decl.typeCheck();
+			}
+		};
+
+		final Stage nameAnalysis = new Stage("nameAnalysis", typeCheck.in) {
+			SymTable symTab = new SymTable();
+
+			void process(DeclNode decl) {
+				DeclListNode.nameAnalysis(decl, symTab, symTab, true);
+			}
+
+			void finish() {
+				ProgramNode.checkMain(symTab);
+			}
+		};
+
+		Stage[] stages = { nameAnalysis, typeCheck, codeGen };
+		for (Stage stage : stages) {
+			stage.start();
+		}
+
+		int failure = P6.RESULT_SYNTAX_ERROR;  // result if this phase fails
+		try {
+			Symbol cfgRoot;
+			P6.PhaseMark phase = p6.startPhase("parse");
+			try {
+				cfgRoot = p6.parseCFG(new Consumer<DeclNode>() {
+					public void accept(DeclNode decl) {
+						put(nameAnalysis.in, decl);
+					}
+				});
+			} finally {
+				P6.endPhase(phase);
+				put(nameAnalysis.in, END);
+			}
+			for (Stage stage : stages) {
+				stage.join();
+			}
+
+			if (cfgRoot == null || comp.hasErrors()) {
+				return P6.RESULT_SYNTAX_ERROR;
+			}
+
+			failure = P6.RESULT_NAME_ANALYSIS_ERROR;
+			if (!merge(nameAnalysis)) {
+				return P6.RESULT_NAME_ANALYSIS_ERROR;
+			}
+			failure = P6.RESULT_TYPE_ERROR;
+			if (!merge(typeCheck) || !merge(codeGen)) {
+				return P6.RESULT_TYPE_ERROR;
+			}
+			comp.out().print(code.toString());
+			return P6.RESULT_CORRECT;
+		} catch (TooManyErrorsException e) {
+			comp.flushDiagnostics();
+			comp.diagnostics().println(e.getMessage());
+			return failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return P6.RESULT_OTHER_ERROR;
+		}
+	}
+
+	/**
+	 * Moves the diagnostics of a stage to the compilation, and passes on
+	 * anything the stage threw, as the phase would have done had it run
+	 * on this thread.
+	 * @return whether the stage finished without error
+	 */
+	private boolean merge(Stage stage) {
+		for (Diagnostic diagnostic : stage.stageComp.reported()) {
+			comp.report(diagnostic);
+		}
+		if (stage.failure instanceof RuntimeException) {
+			throw (RuntimeException)stage.failure;
+		}
+		if (stage.failure instanceof Error) {
+			throw (Error)stage.failure;
+		}
+		if (stage.failure != null) {
+			throw new IllegalStateException(stage.failure);
+		}
+		return !stage.stageComp.hasErrors();
+	}
+
+	private static void put(BlockingQueue<Object> queue, Object item) {
+		try {
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while parsing");
+		}
+	}
+}
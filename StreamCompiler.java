@@ -0,0 +1,228 @@
+import java.io.*;
+import java.util.function.Consumer;
+
+import java_cup.runtime.*;
+
+/**
+ * StreamCompiler
+ *
+ * Compiles a program in a single pass: each top-level declaration is
+ * name analyzed, type checked and generated as soon as the parser has
+ * reduced it, and is then dropped (the parser is told not to keep it in
+ * the program's DeclListNode). Since egg names must be declared before
+ * they are used, everything a declaration needs is already in the
+ * symbol table by then, and what stays in memory is that table's global
+ * scope rather than the whole tree.
+ *
+ * The result is the same, byte for byte, as running the phases one
+ * after another (see P6.runPhases). As in Pipeline:
+ *   - each phase works on every declaration, but stops passing them on
+ *     at its first error, so no later phase sees a declaration that an
+ *     earlier one rejected;
+ *   - each phase reports to a Compilation of its own, and its diagnostics
+ *     are only moved to the real compilation once every earlier phase has
+ *     finished without error;
+ *   - the code goes to a temporary file, which is copied to the output
+ *     only if every phase succeeds.
+ */
+class StreamCompiler {
+	private P6 p6;
+	private Compilation comp;
+
+	/**
+	 * @param p6 compiler whose input to parse
+	 * @param comp compilation of p6
+	 */
+	StreamCompiler(P6 p6, Compilation comp) {
+		this.p6 = p6;
+		this.comp = comp;
+	}
+
+	/**
+	 * One phase, run over each declaration as it is handed on. While it
+	 * has reported no error, the declarations go on to the next phase, if
+	 * there is one. A phase that failed or hit the error limit ignores
+	 * the rest of the declarations.
+	 */
+	private abstract static class Phase {
+		Compilation phaseComp = new Compilation(
+			new PrintStream(OutputStream.nullOutputStream()));
+		Phase next;
+		RuntimeException failure;
+		boolean stopped;
+
+		Phase(Compilation comp, Phase next) {
+			this.next = next;
+			phaseComp.setStats(comp.stats());
+			phaseComp.setLines(comp.lines());
+			phaseComp.setMaxErrors(comp.maxErrors());
+		}
+
+		/**
+		 * Runs the phase over one declaration.
+		 */
+		abstract void process(DeclNode decl);
+
+		/**
+		 * Called once after the last declaration.
+		 */
+		void finish() {
+		}
+
+		void accept(DeclNode decl) {
+			if (stopped) {
+				return;
+			}
+			Compilation prev = Compilation.enter(phaseComp);
+			try {
+				process(decl);
+			} catch (TooManyErrorsException e) {
+				stopped = true;
+			} catch (RuntimeException e) {
+				failure = e;
+				stopped = true;
+			} finally {
+				Compilation.leave(prev);
+			}
+			if (next != null && !stopped && !phaseComp.hasErrors()) {
+				next.accept(decl);
+			}
+		}
+
+		void end() {
+			if (stopped) {
+				return;
+			}
+			Compilation prev = Compilation.enter(phaseComp);
+			try {
+				finish();
+			} catch (TooManyErrorsException e) {
+				// it is in the diagnostics
+			} finally {
+				Compilation.leave(prev);
+			}
+		}
+	}
+
+	/**
+	 * Compiles the input of p6.
+	 * @return one of the P6.RESULT_* codes
+	 */
+	int run() {
+		File codeFile;
+		PrintWriter code;
+		try {
+			codeFile = File.createTempFile("egg", ".s");
+			code = new PrintWriter(new BufferedWriter(new FileWriter(codeFile)));
+		} catch (IOException e) {
+			comp.diagnostics().println("Could not create a temporary file: "
+				+ e.getMessage());
+			return P6.RESULT_OTHER_ERROR;
+		}
+
+		int failure = P6.RESULT_SYNTAX_ERROR;  // result if this phase fails
+		try {
+			final Phase codeGen = new Phase(comp, null) {
+				void process(DeclNode decl) {
+					decl.codeGen();
+				}
+			};
+			codeGen.phaseComp.setOut(code);
+			codeGen.phaseComp.setFunctionCache(comp.functionCache());
+
+			final Phase typeCheck = new Phase(comp, codeGen) {
+				void process(DeclNode decl) {
+					decl.typeCheck();
+				}
+			};
+
+			final Phase nameAnalysis = new Phase(comp, typeCheck) {
+				SymTable symTab = new SymTable();
+
+				void process(DeclNode decl) {
+					DeclListNode.nameAnalysis(decl, symTab, symTab, true);
+				}
+
+				void finish() {
+					ProgramNode.checkMain(symTab);
+				}
+			};
+
+			Symbol cfgRoot;
+			P6.PhaseMark phase = p6.startPhase("stream");
+			try {
+				cfgRoot = p6.parseCFG(new Consumer<DeclNode>() {
+					public void accept(DeclNode decl) {
+						nameAnalysis.accept(decl);
+					}
+				});
+				nameAnalysis.end();
+				code.close();
+			} finally {
+				P6.endPhase(phase);
+				nameAnalysis.phaseComp.publishMetrics();
+				typeCheck.phaseComp.publishMetrics();
+				codeGen.phaseComp.publishMetrics();
+			}
+
+			if (cfgRoot == null || comp.hasErrors()) {
+				return P6.RESULT_SYNTAX_ERROR;
+			}
+			failure = P6.RESULT_NAME_ANALYSIS_ERROR;
+			if (!merge(nameAnalysis)) {
+				return P6.RESULT_NAME_ANALYSIS_ERROR;
+			}
+			failure = P6.RESULT_TYPE_ERROR;
+			if (!merge(typeCheck) || !merge(codeGen)) {
+				return P6.RESULT_TYPE_ERROR;
+			}
+			if (code.checkError()) {
+				comp.diagnostics().println("Could not write the temporary file "
+					+ codeFile);
+				return P6.RESULT_OTHER_ERROR;
+			}
+			copy(codeFile, comp.out());
+			return P6.RESULT_CORRECT;
+		} catch (TooManyErrorsException e) {
+			comp.flushDiagnostics();
+			comp.diagnostics().println(e.getMessage());
+			return failure;
+		} catch (IOException e) {
+			comp.diagnostics().println("Could not read the temporary file "
+				+ codeFile + ": " + e.getMessage());
+			return P6.RESULT_OTHER_ERROR;
+		} finally {
+			code.close();
+			codeFile.delete();
+		}
+	}
+
+	/**
+	 * Moves the diagnostics of a phase to the compilation, and passes on
+	 * anything the phase threw, as it would have done had it been run on
+	 * the whole program.
+	 * @return whether the phase finished without error
+	 */
+	private boolean merge(Phase phase) {
+		for (Diagnostic diagnostic : phase.phaseComp.reported()) {
+			comp.report(diagnostic);
+		}
+		if (phase.failure != null) {
+			throw phase.failure;
+		}
+		return !phase.phaseComp.hasErrors();
+	}
+
+	private static void copy(File file, PrintWriter out) throws IOException {
+		Reader in = new BufferedReader(new FileReader(file));
+		try {
+			char[] buf = new char[8192];
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				out.write(buf, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -1,22 +1,87 @@
 import java.util.*;
 
+/**
+ * Scopes are keyed by name number (see NamePool), so no lookup hashes a
+ * String.
+ */
 public class SymTable {
-    private List<HashMap<String, Sym>> list;
+    private List<IntMap<Sym>> list;
+    
+    // scopes pushed and popped so far, and the most scopes there have been
+    // since resetMaxDepth
+    private int pushes = 0;
+    private int pops = 0;
+    private int maxDepth = 1;
+    
+    // while the globals of a program are collected (see startDecl): the
+    // index of the declaration being processed, and for each global name
+    // number the index of the declaration that introduced it, or -1
+    private int currentDecl = -1;
+    private int[] declOfGlobal;
+    
+    // for a table made by bodyTable: the table holding the global scope,
+    // and the last declaration whose globals can be seen
+    private SymTable globals;
+    private int lastVisibleDecl;
+    
+    // where declarations are counted, if the compilation keeps stats;
+    // looked up at the first declaration rather than at each one (a
+    // table may be made before its compilation is entered)
+    private CompileStats stats;
+    private boolean statsFound = false;
+    
+    // where lookups are counted; looked up at the first lookup, for the
+    // same reason
+    private Compilation comp;
     
     public SymTable() {
-        list = new LinkedList<HashMap<String, Sym>>();
-        list.add(new HashMap<String, Sym>());
+        list = new LinkedList<IntMap<Sym>>();
+        list.add(new IntMap<Sym>());
+    }
+    
+    private SymTable(SymTable globals, int lastVisibleDecl,
+                     IntMap<Sym> scope) {
+        list = new LinkedList<IntMap<Sym>>();
+        list.add(scope);
+        this.globals = globals;
+        this.lastVisibleDecl = lastVisibleDecl;
+        maxDepth = depth();
+    }
+    
+    /**
+     * Notes that the declarations added to the global scope from now on
+     * belong to the program's index-th declaration, for bodyTable.
+     */
+    public void startDecl(int index) {
+        if (declOfGlobal == null) {
+            declOfGlobal = new int[64];
+            Arrays.fill(declOfGlobal, -1);
+        }
+        currentDecl = index;
+    }
+    
+    /**
+     * Returns a new table for the body of the program's index-th
+     * declaration. Its only scope is the given one; names not found there
+     * are looked up in the global scope of this table as it was just
+     * after that declaration, which keeps declare-before-use. The global
+     * scope must no longer change, and then any number of threads may use
+     * tables made from it.
+     */
+    public SymTable bodyTable(int index, IntMap<Sym> scope) {
+        return new SymTable(this, index, scope);
     }
     
-    public void addDecl(String name, Sym sym) 
+    /**
+     * Returns the innermost scope.
+     */
+    public IntMap<Sym> currentScope() {
+        return list.get(0);
+    }
+    
+    public void addDecl(int name, Sym sym) 
 	throws DuplicateSymException, EmptySymTableException, WrongArgumentException {
-	if (name == null && sym == null) {
-	    throw new WrongArgumentException("Arguments name and sym are null.");
-	}
-	else if (name == null) {
-	    throw new WrongArgumentException("Argument name is null.");
-	}
-	else if (sym == null) {
+	if (sym == null) {
 	    throw new WrongArgumentException("Argument sym is null.");
 	}
                
@@ -24,46 +89,102 @@ public class SymTable {
             throw new EmptySymTableException();
         }
 	
-        HashMap<String, Sym> symTab = list.get(0);
+        IntMap<Sym> symTab = list.get(0);
         if (symTab.containsKey(name))
             throw new DuplicateSymException();
         
         symTab.put(name, sym);
+        if (currentDecl >= 0 && list.size() == 1 && globals == null) {
+            if (name >= declOfGlobal.length) {
+                int oldLength = declOfGlobal.length;
+                declOfGlobal = Arrays.copyOf(declOfGlobal,
+                                             Math.max(2 * oldLength, name + 1));
+                Arrays.fill(declOfGlobal, oldLength, declOfGlobal.length, -1);
+            }
+            declOfGlobal[name] = currentDecl;
+        }
+        
+        if (!statsFound) {
+            stats = Compilation.current().stats();
+            statsFound = true;
+        }
+        if (stats != null) {
+            stats.symbols.increment();
+        }
     }
     
     public void addScope() {
-        list.add(0, new HashMap<String, Sym>());
+        list.add(0, new IntMap<Sym>());
+        pushes++;
+        if (depth() > maxDepth)
+            maxDepth = depth();
     }
     
-    public Sym lookupLocal(String name) {
+    public Sym lookupLocal(int name) {
         if (list.isEmpty())
             return null;
         
-        HashMap<String, Sym> symTab = list.get(0); 
+        IntMap<Sym> symTab = list.get(0); 
         return symTab.get(name);
     }
     
-    public Sym lookupGlobal(String name) {
+    public Sym lookupGlobal(int name) {
         if (list.isEmpty())
             return null;
         
-        for (HashMap<String, Sym> symTab : list) {
-            Sym sym = symTab.get(name);
+        int scopes = 0;
+        Sym sym = null;
+        for (IntMap<Sym> symTab : list) {
+            scopes++;
+            sym = symTab.get(name);
             if (sym != null)
-                return sym;
+                break;
         }
-        return null;
+        if (sym == null && globals != null) {
+            scopes++;
+            int[] declOfGlobal = globals.declOfGlobal;
+            if (name < declOfGlobal.length && declOfGlobal[name] >= 0
+                && declOfGlobal[name] <= lastVisibleDecl)
+                sym = globals.list.get(globals.list.size() - 1).get(name);
+        }
+        
+        if (comp == null)
+            comp = Compilation.current();
+        comp.countLookup(scopes);
+        return sym;
     }
     
     public void removeScope() throws EmptySymTableException {
         if (list.isEmpty())
             throw new EmptySymTableException();
         list.remove(0);
+        pops++;
+    }
+    
+    public int getPushes() {
+        return pushes;
+    }
+    
+    public int getPops() {
+        return pops;
+    }
+    
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+    
+    public void resetMaxDepth() {
+        maxDepth = depth();
+    }
+    
+    // the number of scopes, counting the global scope of a body table
+    private int depth() {
+        return globals == null ? list.size() : list.size() + 1;
     }
     
     public void print() {
         System.out.print("\n=== Sym Table ===\n");
-        for (HashMap<String, Sym> symTab : list) {
+        for (IntMap<Sym> symTab : list) {
             System.out.println(symTab.toString());
         }
         System.out.println();
@@ -0,0 +1,383 @@
+import java.io.CharConversionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import java_cup.runtime.*;
+
+/**
+ * TokenStream
+ *
+ * The tokens of a whole input, as FastLexer.tokens finds them, packed
+ * into parallel int arrays rather than held as a Symbol and a TokenVal
+ * each. For token k:
+ *   kind(k)     its sym constant, the last one being sym.EOF
+ *   offset(k)   where it starts in the source
+ *   length(k)   how many bytes it takes
+ *   value(k)    for an ID, the number of its name in the NamePool; for
+ *               an INTLITERAL, its value; otherwise 0
+ * Lines and columns are not kept; the LineTable of the source, which
+ * the stream holds, gives them for an offset when they are needed.
+ *
+ * The messages the scanner reports, and the exception it ends with if
+ * any, are kept with the index of the token they came before. A Cursor
+ * reports and throws them when the parser reaches that token, so the
+ * parser sees the same messages at the same points as from a scanner
+ * that runs alongside it.
+ *
+ * The arrays are gap buffers, so that replace (see IncrementalLexer) can
+ * change a run of tokens in the middle without moving all of the tokens
+ * after it. The free room of the arrays is kept at the index of the last
+ * change; the tokens after it are stored at the end of the arrays, and
+ * their offsets relative to tailOffset, so moving all of them on takes
+ * changing just that. Moving the gap to another index takes time in
+ * proportion to how far it moves.
+ */
+class TokenStream {
+	private LineTable lines;
+	private int size = 0;
+	private int gapStart = 0;
+	private int[] kinds;
+	private int[] offsets;
+	private int[] lengths;
+	private int[] values;
+
+	// added to the stored offset of each token after the gap
+	private int tailOffset = 0;
+
+	/**
+	 * A message of the scanner, at an offset into the source.
+	 */
+	private static class Message {
+		int offset;
+		Diagnostic.Severity severity;
+		String text;
+
+		Message(int offset, Diagnostic.Severity severity, String text) {
+			this.offset = offset;
+			this.severity = severity;
+			this.text = text;
+		}
+	}
+
+	// the scanner's messages, and the index of the token each came before
+	private List<Message> messages = new ArrayList<Message>();
+	private List<Integer> messagesAt = new ArrayList<Integer>();
+
+	// what ended the scan early, if anything, the index it came before,
+	// and the offset the scanner was at
+	private Throwable failure;
+	private int failureAt = -1;
+	private int failureOffset;
+
+	/**
+	 * @param lines table of the input the tokens are in, which holds it
+	 * @param capacity number of tokens to make room for at first
+	 */
+	TokenStream(LineTable lines, int capacity) {
+		this.lines = lines;
+		capacity = Math.max(capacity, 16);
+		kinds = new int[capacity];
+		offsets = new int[capacity];
+		lengths = new int[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * Adds a token at the end.
+	 */
+	void add(int kind, int offset, int length, int value) {
+		moveGap(size);
+		reserve(1);
+		kinds[size] = kind;
+		offsets[size] = offset;
+		lengths[size] = length;
+		values[size] = value;
+		size++;
+		gapStart++;
+	}
+
+	/**
+	 * Keeps a message of the scanner, to be reported before the next token
+	 * to be added.
+	 */
+	void report(int offset, Diagnostic.Severity severity, String text) {
+		messages.add(new Message(offset, severity, text));
+		messagesAt.add(size);
+	}
+
+	/**
+	 * Keeps what ended the scan, to be thrown instead of the next token.
+	 * @param offset the offset the scanner was at
+	 */
+	void fail(Throwable failure, int offset) {
+		this.failure = failure;
+		failureAt = size;
+		failureOffset = offset;
+	}
+
+	/**
+	 * Drops the tokens from index n on, but not the messages kept before
+	 * token n.
+	 */
+	void truncate(int n) {
+		moveGap(n);
+		size = n;
+	}
+
+	/**
+	 * Adds the tokens of another stream of the same source but its EOF,
+	 * and its messages, failure and unterminated string literals, at the
+	 * end. Its ID values are changed from the numbers of their names in
+	 * its pool to nameMap of them.
+	 */
+	void append(TokenStream part, int[] nameMap) {
+		int base = size;
+		for (int k = 0; k < part.size; k++) {
+			int kind = part.kind(k);
+			if (kind == sym.EOF) {
+				break;
+			}
+			add(kind, part.offset(k), part.length(k),
+				kind == sym.ID ? nameMap[part.value(k)] : part.value(k));
+		}
+		for (int k = 0; k < part.messages.size(); k++) {
+			messages.add(part.messages.get(k));
+			messagesAt.add(base + part.messagesAt.get(k));
+		}
+		lines.append(part.lines);
+		if (part.failure != null) {
+			fail(part.failure, part.failureOffset);
+		}
+	}
+
+	/**
+	 * After an edit of the source (see LineTable.edit) that made it delta
+	 * bytes longer, replaces the tokens from index from up to to with the
+	 * tokens of another stream, scanned from the edited source, and moves
+	 * the tokens from to on by delta. The messages kept before tokens from
+	 * to to, both included, are replaced by those of the other stream, as
+	 * are the unterminated string literals recorded from the end of token
+	 * from - 1 up to token to. If to is the end of this stream, its
+	 * failure, if any, is replaced by that of the other stream.
+	 */
+	void replace(int from, int to, TokenStream with, int delta) {
+		int start = from == 0 ? 0 : offset(from - 1) + length(from - 1);
+		int oldEnd = to == size ? Integer.MAX_VALUE : offset(to);
+		lines.replaceLiterals(start, oldEnd, with.lines, delta);
+
+		int added = with.size - (to - from);
+		moveGap(to);
+		gapStart = from;
+		size -= to - from;
+		tailOffset += delta;
+		reserve(with.size);
+		for (int k = 0; k < with.size; k++) {
+			kinds[gapStart] = with.kind(k);
+			offsets[gapStart] = with.offset(k);
+			lengths[gapStart] = with.length(k);
+			values[gapStart] = with.value(k);
+			gapStart++;
+			size++;
+		}
+
+		List<Message> newMessages = new ArrayList<Message>();
+		List<Integer> newAt = new ArrayList<Integer>();
+		int m = 0;
+		for (; m < messages.size() && messagesAt.get(m) < from; m++) {
+			newMessages.add(messages.get(m));
+			newAt.add(messagesAt.get(m));
+		}
+		for (int k = 0; k < with.messages.size(); k++) {
+			newMessages.add(with.messages.get(k));
+			newAt.add(from + with.messagesAt.get(k));
+		}
+		for (; m < messages.size(); m++) {
+			int at = messagesAt.get(m);
+			if (at > to) {
+				Message old = messages.get(m);
+				newMessages.add(new Message(old.offset + delta, old.severity,
+					old.text));
+				newAt.add(at + added);
+			}
+		}
+		messages = newMessages;
+		messagesAt = newAt;
+
+		if (with.failure != null) {
+			failure = with.failure;
+			failureAt = from + with.failureAt;
+			failureOffset = with.failureOffset;
+		} else if (failure != null && failureAt > to) {
+			failureAt += added;
+			failureOffset += delta;
+			if (failure instanceof CharConversionException) {
+				// its line may have moved
+				failure = FastLexer.nonAscii(lines.line(failureOffset));
+			}
+		} else {
+			failure = null;
+			failureAt = -1;
+		}
+	}
+
+	/**
+	 * Moves the gap to index k.
+	 */
+	private void moveGap(int k) {
+		int gap = kinds.length - size;
+		if (k < gapStart) {
+			int n = gapStart - k;
+			move(k, k + gap, n);
+			for (int i = k + gap; i < gapStart + gap; i++) {
+				offsets[i] -= tailOffset;
+			}
+		} else if (k > gapStart) {
+			move(gapStart + gap, gapStart, k - gapStart);
+			for (int i = gapStart; i < k; i++) {
+				offsets[i] += tailOffset;
+			}
+		}
+		gapStart = k;
+	}
+
+	private void move(int from, int to, int n) {
+		System.arraycopy(kinds, from, kinds, to, n);
+		System.arraycopy(offsets, from, offsets, to, n);
+		System.arraycopy(lengths, from, lengths, to, n);
+		System.arraycopy(values, from, values, to, n);
+	}
+
+	/**
+	 * Makes the gap at least n long.
+	 */
+	private void reserve(int n) {
+		if (kinds.length - size >= n) {
+			return;
+		}
+		int capacity = Math.max(kinds.length + kinds.length / 2, size + n);
+		kinds = regap(kinds, capacity);
+		offsets = regap(offsets, capacity);
+		lengths = regap(lengths, capacity);
+		values = regap(values, capacity);
+	}
+
+	private int[] regap(int[] array, int capacity) {
+		int tail = size - gapStart;
+		int[] bigger = new int[capacity];
+		System.arraycopy(array, 0, bigger, 0, gapStart);
+		System.arraycopy(array, array.length - tail, bigger, capacity - tail,
+			tail);
+		return bigger;
+	}
+
+	/**
+	 * Returns where in the arrays token k is.
+	 */
+	private int at(int k) {
+		return k < gapStart ? k : k + kinds.length - size;
+	}
+
+	/**
+	 * Returns what ended the scan early, or null if it got to the end.
+	 */
+	Throwable failure() {
+		return failure;
+	}
+
+	LineTable lines() {
+		return lines;
+	}
+
+	byte[] source() {
+		return lines.source();
+	}
+
+	int sourceLength() {
+		return lines.length();
+	}
+
+	int size() {
+		return size;
+	}
+
+	int kind(int k) {
+		return kinds[at(k)];
+	}
+
+	int offset(int k) {
+		return k < gapStart ? offsets[k] : offsets[at(k)] + tailOffset;
+	}
+
+	int length(int k) {
+		return lengths[at(k)];
+	}
+
+	int value(int k) {
+		return values[at(k)];
+	}
+
+	/**
+	 * Returns a scanner that hands the tokens to a parser.
+	 * @param names pool the ID values are numbers in
+	 */
+	Cursor cursor(NamePool names) {
+		return new Cursor(names);
+	}
+
+	/**
+	 * Reads the stream from the start, making a Symbol of each token as
+	 * the parser asks for it. Only the tokens whose values the grammar
+	 * uses get a TokenVal; the rest carry their offset and end in the
+	 * Symbol's left and right.
+	 */
+	class Cursor implements Scanner {
+		private NamePool names;
+		private int next = 0;
+		private int nextMessage = 0;
+
+		Cursor(NamePool names) {
+			this.names = names;
+		}
+
+		public Symbol next_token() throws Exception {
+			while (nextMessage < messages.size()
+					&& messagesAt.get(nextMessage) <= next) {
+				Message m = messages.get(nextMessage++);
+				Compilation.current().report(new Diagnostic(lines.line(m.offset),
+					lines.column(m.offset), m.severity, m.text));
+			}
+			if (next == failureAt) {
+				if (failure instanceof Error) {
+					throw (Error)failure;
+				}
+				throw (Exception)failure;
+			}
+			if (next == size) {
+				return new Symbol(sym.EOF);
+			}
+			int k = next++;
+			int kind = kind(k);
+			int offset = offset(k);
+			int end = offset + length(k);
+			switch (kind) {
+			case sym.EOF:
+				next--;  // stay at the end
+				return new Symbol(sym.EOF);
+			case sym.ID:
+				return new Symbol(sym.ID, offset, end, new IdTokenVal(offset,
+					names.name(value(k)), value(k)));
+			case sym.INTLITERAL:
+				return new Symbol(sym.INTLITERAL, offset, end,
+					new IntLitTokenVal(offset, value(k)));
+			case sym.STRINGLITERAL:
+				return new Symbol(sym.STRINGLITERAL, offset, end,
+					new StrLitTokenVal(source(), offset, length(k)));
+			case sym.TRUE:
+			case sym.FALSE:
+				return new Symbol(kind, offset, end, new TokenVal(offset));
+			default:
+				return new Symbol(kind, offset, end, null);
+			}
+		}
+	}
+}
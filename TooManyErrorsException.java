@@ -0,0 +1,11 @@
+/**
+ * Thrown when a compilation reports its limit of errors, to stop the
+ * phase that is running.
+ */
+public class TooManyErrorsException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public TooManyErrorsException(int maxErrors) {
+		super("stopped after " + maxErrors + " errors");
+	}
+}
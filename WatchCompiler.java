@@ -0,0 +1,115 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WatchCompiler
+ *
+ * Keeps a compiler running and compiles its inputs again whenever they
+ * are saved. The command line is
+ *
+ *    P6 --watch <infile> <outfile> [<infile> <outfile>]...
+ *
+ * Every input is compiled once at start and then each time it changes.
+ * The diagnostics of each compile are printed, followed by a line giving
+ * its result and how long it took. The code of functions that did not
+ * change since an earlier compile is reused (see FunctionCache), so after
+ * an edit only the edited functions are generated again.
+ */
+public class WatchCompiler {
+	// editors often write a file in several steps; wait this long after
+	// the last event for a file before compiling it
+	private static final long SETTLE_MILLIS = 20;
+
+	private Map<Path, String> outfiles = new LinkedHashMap<Path, String>();
+	private FunctionCache functionCache = new FunctionCache(null);
+	private PrintStream outStream = System.err;
+
+	/**
+	 * @param args command line args array for [<infile> <outfile>]...
+	 */
+	public WatchCompiler(String[] args) {
+		if (args.length < 2 || args.length % 2 != 0) {
+			throw new IllegalArgumentException("please supply pairs of input "
+				+ "file and assembly output file names.");
+		}
+		for (int k = 0; k < args.length; k += 2) {
+			outfiles.put(Paths.get(args[k]).toAbsolutePath().normalize(),
+				args[k + 1]);
+		}
+	}
+
+	/**
+	 * Compiles every input, then recompiles inputs as they change until
+	 * the process is stopped.
+	 */
+	public void watch() throws IOException, InterruptedException {
+		CompilerMetrics.register();
+		WatchService watcher = FileSystems.getDefault().newWatchService();
+		Set<Path> dirs = new HashSet<Path>();
+		for (Path infile : outfiles.keySet()) {
+			if (dirs.add(infile.getParent())) {
+				infile.getParent().register(watcher,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+			compile(infile);
+		}
+		outStream.println("watching " + outfiles.size() + " file(s)");
+
+		Set<Path> changed = new LinkedHashSet<Path>();
+		while (true) {
+			WatchKey key = changed.isEmpty() ? watcher.take()
+				: watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+			if (key == null) {
+				// things have settled
+				for (Path infile : changed) {
+					compile(infile);
+				}
+				changed.clear();
+				continue;
+			}
+			Path dir = (Path)key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					// events were lost, so any of the files may have changed
+					changed.addAll(outfiles.keySet());
+					continue;
+				}
+				Path infile = dir.resolve((Path)event.context());
+				if (outfiles.containsKey(infile)) {
+					changed.add(infile);
+				}
+			}
+			key.reset();
+		}
+	}
+
+	/**
+	 * Compiles one input and reports on it.
+	 */
+	void compile(Path infile) {
+		long start = System.nanoTime();
+		ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+		P6 instance = new P6(new PrintStream(diagnostics, true));
+		instance.setFunctionCache(functionCache);
+		int resultCode;
+		try {
+			instance.setInfile(infile.toString());
+			instance.setOutfile(outfiles.get(infile));
+			resultCode = instance.process();
+		} catch (Exception ex) {
+			// the file was removed, or cannot be written
+			new PrintStream(diagnostics, true).println(ex.getMessage());
+			resultCode = P6.RESULT_OTHER_ERROR;
+		} finally {
+			instance.cleanup();
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		outStream.print(diagnostics.toString());
+		outStream.println(infile.getFileName() + ": "
+			+ P6.resultMessage(resultCode) + " in " + millis + " ms");
+	}
+}
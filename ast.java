@@ -131,32 +131,76 @@ class ProgramNode extends ASTnode {
      * nameAnalysis
      * Creates an empty symbol table for the outermost scope, then processes
      * all of the globals, struct defintions, and functions in the program.
+     * Errors are reported to the given compilation, which may ask for the
+     * function bodies to be processed in parallel.
      */
-    public void nameAnalysis() {
-        SymTable symTab = new SymTable();
-        myDeclList.nameAnalysis(symTab, true);
+    public void nameAnalysis(Compilation comp) {
+        Compilation prev = Compilation.enter(comp);
+        try {
+            if (comp.parallelAnalysis()) {
+                ParallelAnalysis.nameAnalysis(myDeclList.getDeclList(), comp);
+                return;
+            }
+            SymTable symTab = new SymTable();
+            myDeclList.nameAnalysis(symTab, true);
+            checkMain(symTab);
+        } finally {
+            Compilation.leave(prev);
+        }
+    }
+    
+    /**
+     * checkMain
+     * Given the symbol table of the whole program, check that it has a
+     * function named main.
+     */
+    public static void checkMain(SymTable symTab) {
+        Sym sym = symTab.lookupGlobal(NamePool.MAIN);
         
-        Sym sym = symTab.lookupGlobal("main");
-		
-		// check if funciton named main
-		if (sym == null || !(sym instanceof FnSym)) {
-			ErrMsg.fatal(0, 0, "No main function");
-		}
+        // check if funciton named main
+        if (sym == null || !(sym instanceof FnSym)) {
+            ErrMsg.fatal(0, 0, "No main function");
+        }
     }
     
     /**
      * typeCheck
+     * Errors are reported to the given compilation.
      */
-    public void typeCheck() {
-        myDeclList.typeCheck();
+    public void typeCheck(Compilation comp) {
+        Compilation prev = Compilation.enter(comp);
+        try {
+            if (comp.parallelAnalysis()) {
+                ParallelAnalysis.typeCheck(myDeclList.getDeclList(), comp);
+                return;
+            }
+            myDeclList.typeCheck();
+        } finally {
+            Compilation.leave(prev);
+        }
     }
     
     public void unparse(PrintWriter p, int indent) {
         myDeclList.unparse(p, indent);
     }
     
-    public void codeGen(){
-    	myDeclList.codeGen();
+    /**
+     * codeGen
+     * Writes the code for the program to the output of the given
+     * compilation, generating the declarations in parallel if the
+     * compilation asks for it.
+     */
+    public void codeGen(Compilation comp) {
+        Compilation prev = Compilation.enter(comp);
+        try {
+            if (comp.parallelCodeGen()) {
+                ParallelCodeGen.generate(myDeclList.getDeclList(), comp);
+            } else {
+                myDeclList.codeGen();
+            }
+        } finally {
+            Compilation.leave(prev);
+        }
     }
 
     // 1 kid
@@ -192,7 +236,9 @@ class DeclListNode extends ASTnode {
             
             if (node instanceof VarDeclNode) {
                 Sym sym = ((VarDeclNode)node).nameAnalysis(symTab, globalTab, false);
-                sym.setOffset(localOffset);
+                if (sym != null) {  // null if the decl was in error
+                    sym.setOffset(localOffset);
+                }
             } else {
                 node.nameAnalysis(symTab, false);
             }
@@ -208,14 +254,23 @@ class DeclListNode extends ASTnode {
      */    
     public void nameAnalysis(SymTable symTab, SymTable globalTab, boolean global) {
         for (DeclNode node : myDecls) {
-            if (node instanceof VarDeclNode) {
-                ((VarDeclNode)node).nameAnalysis(symTab, globalTab, global);
-            } else {
-                node.nameAnalysis(symTab, global);
-            }
+            nameAnalysis(node, symTab, globalTab, global);
         }
     } 
     
+    /**
+     * nameAnalysis
+     * Process one decl of a list, as the method above does for each.
+     */
+    public static void nameAnalysis(DeclNode node, SymTable symTab,
+                                    SymTable globalTab, boolean global) {
+        if (node instanceof VarDeclNode) {
+            ((VarDeclNode)node).nameAnalysis(symTab, globalTab, global);
+        } else {
+            node.nameAnalysis(symTab, global);
+        }
+    }
+    
     /**
      * typeCheck
      */
@@ -250,6 +305,18 @@ class DeclListNode extends ASTnode {
         }
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for these declarations.
+     */
+    public int labelCount(){
+        int count = 0;
+        for (DeclNode node : myDecls) {
+            count += node.labelCount();
+        }
+        return count;
+    }
+
     // list of kids (DeclNodes)
     private List<DeclNode> myDecls;
 }
@@ -329,12 +396,16 @@ class FnBodyNode extends ASTnode {
     public void typeCheck(Type retType) {
         myStmtList.typeCheck(retType);
     }
-    public String getDeclListFinalId(){
+    /**
+     * Returns the name number of the last local declared, or -1 if there
+     * are none.
+     */
+    public int getDeclListFinalId(){
     	List<DeclNode> myList = myDeclList.getDeclList();
     	if(myList.size() == 0){
-    		return null;
+    		return -1;
     	}
-    	return ((VarDeclNode)myList.get(myList.size()-1)).getDeclId().name();
+    	return ((VarDeclNode)myList.get(myList.size()-1)).getDeclId().nameId();
     }
           
     public void unparse(PrintWriter p, int indent) {
@@ -347,6 +418,14 @@ class FnBodyNode extends ASTnode {
     	myStmtList.codeGen(retLabel);
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myDeclList.labelCount() + myStmtList.labelCount();
+    }
+
     // 2 kids
     private DeclListNode myDeclList;
     private StmtListNode myStmtList;
@@ -390,6 +469,18 @@ class StmtListNode extends ASTnode {
         }
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for these statements.
+     */
+    public int labelCount(){
+        int count = 0;
+        for (StmtNode node : myStmts) {
+            count += node.labelCount();
+        }
+        return count;
+    }
+
     // list of kids (StmtNodes)
     private List<StmtNode> myStmts;
 }
@@ -425,7 +516,7 @@ class ExpListNode extends ASTnode {
                 if (!actualType.isErrorType()) {        // if this is not an error
                     Type formalType = typeList.get(k);  // get the formal type
                     if (!formalType.equals(actualType)) {
-                        ErrMsg.fatal(node.lineNum(), node.charNum(),
+                        ErrMsg.fatal(node.offset(),
                                      "Type of actual does not match type of formal");
                     }
                 }
@@ -459,6 +550,18 @@ class ExpListNode extends ASTnode {
         }
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for these expressions.
+     */
+    public int labelCount(){
+        int count = 0;
+        for (ExpNode node : myExps) {
+            count += node.labelCount();
+        }
+        return count;
+    }
+
     // list of kids (ExpNodes)
     private List<ExpNode> myExps;
 }
@@ -477,6 +580,7 @@ abstract class DeclNode extends ASTnode {
     // default version of typeCheck for non-function decls
     public void typeCheck() { }
     public void codeGen() { }
+    public int labelCount() { return 0; }
 }
 
 class VarDeclNode extends DeclNode {
@@ -508,24 +612,24 @@ class VarDeclNode extends DeclNode {
     
     public Sym nameAnalysis(SymTable symTab, SymTable globalTab, boolean global) {
         boolean badDecl = false;
-        String name = myId.name();
+        int name = myId.nameId();
         Sym sym = null;
         IdNode structId = null;
 
         if (myType instanceof VoidNode) {  // check for void type
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Non-function declared void");
             badDecl = true;        
         }
         
         else if (myType instanceof StructNode) {
             structId = ((StructNode)myType).idNode();
-            sym = globalTab.lookupGlobal(structId.name());
+            sym = globalTab.lookupGlobal(structId.nameId());
             
             // if the name for the struct type is not found, 
             // or is not a struct type
             if (sym == null || !(sym instanceof StructDefSym)) {
-                ErrMsg.fatal(structId.lineNum(), structId.charNum(), 
+                ErrMsg.fatal(structId.offset(), 
                              "Invalid name of struct type");
                 badDecl = true;
             }
@@ -535,7 +639,7 @@ class VarDeclNode extends DeclNode {
         }
         
         if (symTab.lookupLocal(name) != null) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Multiply declared identifier");
             badDecl = true;            
         }
@@ -622,11 +726,30 @@ class FnDeclNode extends DeclNode {
      *     exit scope
      */
     public Sym nameAnalysis(SymTable symTab, boolean global) {
-        String name = myId.name();
+        nameAnalysisSignature(symTab, global);
+        nameAnalysisBody(symTab);
+        try {
+            symTab.removeScope();  // exit scope
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException " +
+                               " in FnDeclNode.nameAnalysis");
+            System.exit(-1);
+        }
+        return null;
+    } 
+    
+    /**
+     * nameAnalysisSignature
+     * The first part of nameAnalysis: add the function's name to symTab
+     * if it is not multiply declared, enter a new scope and process the
+     * formals. The new scope is left for nameAnalysisBody.
+     */
+    public void nameAnalysisSignature(SymTable symTab, boolean global) {
+        int name = myId.nameId();
         FnSym sym = null;
         
         if (symTab.lookupLocal(name) != null) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(),
+            ErrMsg.fatal(myId.offset(),
                          "Multiply declared identifier");
         }
         
@@ -656,28 +779,49 @@ class FnDeclNode extends DeclNode {
         List<Type> typeList = myFormalsList.nameAnalysis(symTab);
         if (sym != null) {
             sym.addFormals(typeList);
+            sym.setFormalsOffset(myFormalsList.getFormalsOffset());
+        }
+    }
+    
+    /**
+     * nameAnalysisBody
+     * The second part of nameAnalysis: process the body of the function
+     * in the innermost scope of symTab, which holds the formals. This is
+     * the part ParallelAnalysis runs on other threads, so the ScopeBurst
+     * event is recorded here.
+     */
+    public void nameAnalysisBody(SymTable symTab) {
+        CompilerEvents.ScopeBurst burst = null;
+        if (CompilerEvents.recording()) {
+            burst = new CompilerEvents.ScopeBurst();
+            burst.begin();
         }
-        sym.setFormalsOffset(myFormalsList.getFormalsOffset());
+        int pushes = symTab.getPushes();
+        int pops = symTab.getPops();
+        symTab.resetMaxDepth();
+        
         //TODO set offset for formals(update fp and sp)
         myBody.nameAnalysis(symTab); // process the function body
-        int localsOffset;
-        if(myBody.getDeclListFinalId() != null){
-            localsOffset = symTab.lookupLocal(myBody.getDeclListFinalId()).getOffset();
-        	}
-        else{
-            localsOffset = 0;
-        }
-        sym.setLocalsOffset(localsOffset); //get offset from declList
-        try {
-            symTab.removeScope();  // exit scope
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException " +
-                               " in FnDeclNode.nameAnalysis");
-            System.exit(-1);
+        int localsOffset = 0;
+        if(myBody.getDeclListFinalId() >= 0){
+            Sym last = symTab.lookupLocal(myBody.getDeclListFinalId());
+            if (last != null) {  // null if the decl was in error
+                localsOffset = last.getOffset();
+            }
+        }
+        FnSym sym = (FnSym)myId.sym();
+        if (sym != null) {  // null if multiply declared
+            sym.setLocalsOffset(localsOffset); //get offset from declList
         }
         
-        return null;
-    } 
+        if (burst != null && burst.shouldCommit()) {
+            burst.function = myId.name();
+            burst.pushes = symTab.getPushes() - pushes;
+            burst.pops = symTab.getPops() - pops;
+            burst.maxDepth = symTab.getMaxDepth();
+            burst.commit();
+        }
+    }
     public Sym nameAnalysis(SymTable symTab) {return null;} //needed for abstract
        
     /**
@@ -699,7 +843,47 @@ class FnDeclNode extends DeclNode {
         p.println("}\n");
     }
     
+    /**
+     * Return the symbol of this function.
+     */
+    public Sym sym() {
+        return myId.sym();
+    }
+    
+    /**
+     * codeGen
+     * Reuses the code generated for an identical function before when
+     * the compilation has a FunctionCache.
+     */
     public void codeGen(){
+    	CompilerEvents.FunctionCodeGen event = null;
+    	if (CompilerEvents.recording()) {
+    		event = new CompilerEvents.FunctionCodeGen();
+    		event.begin();
+    	}
+    	long instructions = Compilation.current().instructionCount();
+    	
+    	FunctionCache cache = Compilation.current().functionCache();
+    	if (cache == null) {
+    		generate();
+    	} else {
+    		String key = cache.keyOf(this);
+    		if (!cache.replay(key)) {
+    			FunctionCache.Recording recording = cache.record();
+    			generate();
+    			recording.finish(key);
+    		}
+    	}
+    	
+    	if (event != null && event.shouldCommit()) {
+    		event.function = myId.name();
+    		event.instructions =
+    			Compilation.current().instructionCount() - instructions;
+    		event.commit();
+    	}
+    }
+    
+    private void generate(){
     	if(myId.name().equals("main")){
     		Codegen.generate(".text");
     		Codegen.generate(".globl ", "main");
@@ -732,11 +916,19 @@ class FnDeclNode extends DeclNode {
     	else{
     		Codegen.generate("jr", "$ra");
     	}
-    	
     }
 
 
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this function: its
+     * return label and those of its body.
+     */
+    public int labelCount(){
+    	return 1 + myBody.labelCount();
+    }
+
     // 4 kids
     private TypeNode myType;
     private IdNode myId;
@@ -759,18 +951,18 @@ class FormalDeclNode extends DeclNode {
      * else add a new entry to the symbol table and return that Sym
      */
     public Sym nameAnalysis(SymTable symTab) {
-        String name = myId.name();
+        int name = myId.nameId();
         boolean badDecl = false;
         Sym sym = null;
         
         if (myType instanceof VoidNode) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Non-function declared void");
             badDecl = true;        
         }
         
         if (symTab.lookupLocal(name) != null) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Multiply declared identifier");
             badDecl = true;
         }
@@ -827,11 +1019,11 @@ class StructDeclNode extends DeclNode {
      *     add a new entry to symbol table for this struct
      */
     public Sym nameAnalysis(SymTable symTab) {
-        String name = myId.name();
+        int name = myId.nameId();
         boolean badDecl = false;
         
         if (symTab.lookupLocal(name) != null) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Multiply declared identifier");
             badDecl = true;            
         }
@@ -972,6 +1164,7 @@ abstract class StmtNode extends ASTnode {
     abstract public void nameAnalysis(SymTable symTab);
     abstract public void typeCheck(Type retType);
     abstract public void codeGen(String retLabel);
+    abstract public int labelCount();
 }
 
 class AssignStmtNode extends StmtNode {
@@ -1006,6 +1199,14 @@ class AssignStmtNode extends StmtNode {
     	Codegen.genPop("$t1");
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myAssign.labelCount();
+    }
+
     // 1 kid
     private AssignNode myAssign;
 }
@@ -1030,7 +1231,7 @@ class PostIncStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Arithmetic operator applied to non-numeric operand");
         }
     }
@@ -1050,6 +1251,14 @@ class PostIncStmtNode extends StmtNode {
     	Codegen.generateIndexed("sw", "$t1",  "$t0", 0);  //store t1 into t0
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 0;
+    }
+
     // 1 kid
     private ExpNode myExp;
 }
@@ -1074,7 +1283,7 @@ class PostDecStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Arithmetic operator applied to non-numeric operand");
         }
     }
@@ -1094,6 +1303,14 @@ class PostDecStmtNode extends StmtNode {
     	Codegen.generateIndexed("sw", "$t1",  "$t0", 0);  //store t1 into t0
     }
     
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 0;
+    }
+
     // 1 kid
     private ExpNode myExp;
 }
@@ -1118,17 +1335,17 @@ class ReadStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (type.isFnType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to read a function");
         }
         
         if (type.isStructDefType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to read a struct name");
         }
         
         if (type.isStructType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to read a struct variable");
         }
     }
@@ -1147,6 +1364,14 @@ class ReadStmtNode extends StmtNode {
 		Codegen.generateIndexed("sw", "$v0",  "$t0", 0);	// store v0 that address
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 0;
+    }
+
     // 1 kid (actually can only be an IdNode or an ArrayExpNode)
     private ExpNode myExp;
 }
@@ -1171,22 +1396,22 @@ class WriteStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (type.isFnType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to write a function");
         }
         
         if (type.isStructDefType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to write a struct name");
         }
         
         if (type.isStructType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to write a struct variable");
         }
         
         if (type.isVoidType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Attempt to write void");
         }
     }
@@ -1212,6 +1437,14 @@ class WriteStmtNode extends StmtNode {
     	}
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExp.labelCount();
+    }
+
     // 1 kid
     private ExpNode myExp;
 }
@@ -1252,7 +1485,7 @@ class IfStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Non-bool expression used as an if condition");        
         }
         
@@ -1281,6 +1514,15 @@ class IfStmtNode extends StmtNode {
        Codegen.genLabel(label);
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 1 + myExp.labelCount() + myDeclList.labelCount()
+    		+ myStmtList.labelCount();
+    }
+
     // e kids
     private ExpNode myExp;
     private DeclListNode myDeclList;
@@ -1340,7 +1582,7 @@ class IfElseStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Non-bool expression used as an if condition");        
         }
         
@@ -1384,6 +1626,16 @@ class IfElseStmtNode extends StmtNode {
 		Codegen.genLabel(label2);
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 2 + myExp.labelCount()
+    		+ myThenDeclList.labelCount() + myThenStmtList.labelCount()
+    		+ myElseDeclList.labelCount() + myElseStmtList.labelCount();
+    }
+
     // 5 kids
     private ExpNode myExp;
     private DeclListNode myThenDeclList;
@@ -1428,7 +1680,7 @@ class WhileStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Non-bool expression used as a while condition");        
         }
         
@@ -1461,6 +1713,15 @@ class WhileStmtNode extends StmtNode {
        Codegen.genLabel(label1);
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 2 + myExp.labelCount() + myDeclList.labelCount()
+    		+ myStmtList.labelCount();
+    }
+
     // 3 kids
     private ExpNode myExp;
     private DeclListNode myDeclList;
@@ -1503,7 +1764,7 @@ class RepeatStmtNode extends StmtNode {
         Type type = myExp.typeCheck();
         
         if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+            ErrMsg.fatal(myExp.offset(),
                          "Non-integer expression used as a repeat clause");        
         }
         
@@ -1525,6 +1786,14 @@ class RepeatStmtNode extends StmtNode {
 		// dont need to do
     }
 
+    /**
+     * labelCount
+     * Returns 0, since codeGen generates nothing for a repeat.
+     */
+    public int labelCount(){
+    	return 0;
+    }
+
     // 3 kids
     private ExpNode myExp;
     private DeclListNode myDeclList;
@@ -1564,6 +1833,14 @@ class CallStmtNode extends StmtNode {
     	
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myCall.labelCount();
+    }
+
     // 1 kid
     private CallExpNode myCall;
 }
@@ -1592,12 +1869,12 @@ class ReturnStmtNode extends StmtNode {
             Type type = myExp.typeCheck();
             
             if (retType.isVoidType()) {
-                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                ErrMsg.fatal(myExp.offset(),
                              "Return with a value in a void function");                
             }
             
             else if (!retType.isErrorType() && !type.isErrorType() && !retType.equals(type)){
-                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                ErrMsg.fatal(myExp.offset(),
                              "Bad return value");
             }
         }
@@ -1628,6 +1905,14 @@ class ReturnStmtNode extends StmtNode {
     	//TODO use retLabel here
     }
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExp == null ? 0 : myExp.labelCount();
+    }
+
     // 1 kid
     private ExpNode myExp; // possibly null
 }
@@ -1644,29 +1929,25 @@ abstract class ExpNode extends ASTnode {
     
     abstract public Type typeCheck();
     abstract public Type codeGen();
-    abstract public int lineNum();
-    abstract public int charNum();
+    
+    /**
+     * Default version for nodes whose codeGen takes no labels
+     */
+    public int labelCount() { return 0; }
+    abstract public int offset();
 }
 
 class IntLitNode extends ExpNode {
-    public IntLitNode(int lineNum, int charNum, int intVal) {
-        myLineNum = lineNum;
-        myCharNum = charNum;
+    public IntLitNode(int offset, int intVal) {
+        myOffset = offset;
         myIntVal = intVal;
     }
     
     /**
-     * Return the line number for this literal.
+     * Return the offset into the input for this literal.
      */
-    public int lineNum() {
-        return myLineNum;
-    }
-    
-    /**
-     * Return the char number for this literal.
-     */
-    public int charNum() {
-        return myCharNum;
+    public int offset() {
+        return myOffset;
     }
         
     /**
@@ -1687,30 +1968,31 @@ class IntLitNode extends ExpNode {
     }
     
 
-    private int myLineNum;
-    private int myCharNum;
+    private int myOffset;
     private int myIntVal;
 }
 
 class StringLitNode extends ExpNode {
-    public StringLitNode(int lineNum, int charNum, String strVal) {
-        myLineNum = lineNum;
-        myCharNum = charNum;
+    public StringLitNode(int offset, String strVal) {
+        myOffset = offset;
         myStrVal = strVal;
     }
     
     /**
-     * Return the line number for this literal.
+     * A literal that stays in the scanner's input, in
+     * source[offset, offset + length), until it is written out.
      */
-    public int lineNum() {
-        return myLineNum;
+    public StringLitNode(byte[] source, int offset, int length) {
+        mySource = source;
+        myOffset = offset;
+        myLength = length;
     }
     
     /**
-     * Return the char number for this literal.
+     * Return the offset into the input for this literal.
      */
-    public int charNum() {
-        return myCharNum;
+    public int offset() {
+        return myOffset;
     }
     
     /**
@@ -1721,42 +2003,52 @@ class StringLitNode extends ExpNode {
     }
         
     public void unparse(PrintWriter p, int indent) {
-        p.print(myStrVal);
+        if (myStrVal != null) {
+            p.print(myStrVal);
+        } else {
+            Codegen.write(p, mySource, myOffset, myLength);
+        }
     }
     
     public Type codeGen(){
     	Codegen.generate(".data");
     	String strLabel = Codegen.nextLabel();
-    	Codegen.generateLabeled(strLabel, ".asciiz", "", myStrVal);
+    	if (myStrVal != null) {
+    	    Codegen.generateLabeled(strLabel, ".asciiz", "", myStrVal);
+    	} else {
+    	    Codegen.generateLabeled(strLabel, ".asciiz", mySource, myOffset,
+    	                            myLength);
+    	}
     	Codegen.generate(".text");
     	Codegen.generate("la", "$t0", strLabel);
     	Codegen.genPush("$t0");
     	return new StringType();
     }
 
-    private int myLineNum;
-    private int myCharNum;
-    private String myStrVal;
+    /**
+     * labelCount
+     * Returns 1, for the label of the string in the data segment.
+     */
+    public int labelCount(){
+    	return 1;
+    }
+
+    private int myOffset;
+    private String myStrVal;  // null if the literal is in mySource
+    private byte[] mySource;
+    private int myLength;
 }
 
 class TrueNode extends ExpNode {
-    public TrueNode(int lineNum, int charNum) {
-        myLineNum = lineNum;
-        myCharNum = charNum;
+    public TrueNode(int offset) {
+        myOffset = offset;
     }
 
     /**
-     * Return the line number for this literal.
+     * Return the offset into the input for this literal.
      */
-    public int lineNum() {
-        return myLineNum;
-    }
-    
-    /**
-     * Return the char number for this literal.
-     */
-    public int charNum() {
-        return myCharNum;
+    public int offset() {
+        return myOffset;
     }
     
     /**
@@ -1776,28 +2068,19 @@ class TrueNode extends ExpNode {
     	return new BoolType();
     }
 
-    private int myLineNum;
-    private int myCharNum;
+    private int myOffset;
 }
 
 class FalseNode extends ExpNode {
-    public FalseNode(int lineNum, int charNum) {
-        myLineNum = lineNum;
-        myCharNum = charNum;
+    public FalseNode(int offset) {
+        myOffset = offset;
     }
 
     /**
-     * Return the line number for this literal.
-     */
-    public int lineNum() {
-        return myLineNum;
-    }
-    
-    /**
-     * Return the char number for this literal.
+     * Return the offset into the input for this literal.
      */
-    public int charNum() {
-        return myCharNum;
+    public int offset() {
+        return myOffset;
     }
 
     /**
@@ -1817,15 +2100,14 @@ class FalseNode extends ExpNode {
     	return new BoolType();
     }
 
-    private int myLineNum;
-    private int myCharNum;
+    private int myOffset;
 }
 
 class IdNode extends ExpNode {
-    public IdNode(int lineNum, int charNum, String strVal) {
-        myLineNum = lineNum;
-        myCharNum = charNum;
+    public IdNode(int offset, String strVal, int nameId) {
+        myOffset = offset;
         myStrVal = strVal;
+        myNameId = nameId;
     }
 
     /**
@@ -1843,25 +2125,25 @@ class IdNode extends ExpNode {
     }
     
     /**
-     * Return the symbol associated with this ID.
+     * Return the number of this ID's name in the compilation's NamePool.
      */
-    public Sym sym() {
-        return mySym;
+    public int nameId() {
+        return myNameId;
     }
     
     /**
-     * Return the line number for this ID.
+     * Return the symbol associated with this ID.
      */
-    public int lineNum() {
-        return myLineNum;
+    public Sym sym() {
+        return mySym;
     }
     
     /**
-     * Return the char number for this ID.
+     * Return the offset into the input for this ID.
      */
-    public int charNum() {
-        return myCharNum;
-    }    
+    public int offset() {
+        return myOffset;
+    }
     
     /**
      * nameAnalysis
@@ -1870,9 +2152,9 @@ class IdNode extends ExpNode {
      * - if ok, link to symbol table entry
      */
     public void nameAnalysis(SymTable symTab) {
-        Sym sym = symTab.lookupGlobal(myStrVal);
+        Sym sym = symTab.lookupGlobal(myNameId);
         if (sym == null) {
-            ErrMsg.fatal(myLineNum, myCharNum, "Undeclared identifier");
+            ErrMsg.fatal(myOffset, "Undeclared identifier");
         } else {
             link(sym);
         }
@@ -1929,9 +2211,9 @@ class IdNode extends ExpNode {
     	}
     }
 
-    private int myLineNum;
-    private int myCharNum;
+    private int myOffset;
     private String myStrVal;
+    private int myNameId;
     private Sym mySym;
 }
 
@@ -1950,19 +2232,11 @@ class DotAccessExpNode extends ExpNode {
     }    
     
     /**
-     * Return the line number for this dot-access node. 
-     * The line number is the one corresponding to the RHS of the dot-access.
+     * Return the offset into the input for this dot-access node.
+     * The offset is the one corresponding to the RHS of the dot-access.
      */
-    public int lineNum() {
-        return myId.lineNum();
-    }
-    
-    /**
-     * Return the char number for this dot-access node.
-     * The char number is the one corresponding to the RHS of the dot-access.
-     */
-    public int charNum() {
-        return myId.charNum();
+    public int offset() {
+        return myId.offset();
     }
     
     /**
@@ -1997,7 +2271,7 @@ class DotAccessExpNode extends ExpNode {
                 structSymTab = ((StructDefSym)tempSym).getSymTable();
             } 
             else {  // LHS is not a struct type
-                ErrMsg.fatal(id.lineNum(), id.charNum(), 
+                ErrMsg.fatal(id.offset(), 
                              "Dot-access of non-struct type");
                 badAccess = true;
             }
@@ -2017,7 +2291,7 @@ class DotAccessExpNode extends ExpNode {
                 sym = loc.sym();
 
                 if (sym == null) {  // no struct in which to look up RHS
-                    ErrMsg.fatal(loc.lineNum(), loc.charNum(), 
+                    ErrMsg.fatal(loc.offset(), 
                                  "Dot-access of non-struct type");
                     badAccess = true;
                 }
@@ -2042,9 +2316,9 @@ class DotAccessExpNode extends ExpNode {
         // do name analysis on RHS of dot-access in the struct's symbol table
         if (!badAccess) {
         
-            sym = structSymTab.lookupGlobal(myId.name()); // lookup
+            sym = structSymTab.lookupGlobal(myId.nameId()); // lookup
             if (sym == null) { // not found - RHS is not a valid field name
-                ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+                ErrMsg.fatal(myId.offset(), 
                              "Invalid struct field name");
                 badAccess = true;
             }
@@ -2092,19 +2366,11 @@ class AssignNode extends ExpNode {
     }
     
     /**
-     * Return the line number for this assignment node. 
-     * The line number is the one corresponding to the left operand.
+     * Return the offset into the input for this assignment node.
+     * The offset is the one corresponding to the left operand.
      */
-    public int lineNum() {
-        return myLhs.lineNum();
-    }
-    
-    /**
-     * Return the char number for this assignment node.
-     * The char number is the one corresponding to the left operand.
-     */
-    public int charNum() {
-        return myLhs.charNum();
+    public int offset() {
+        return myLhs.offset();
     }
     
     /**
@@ -2126,22 +2392,22 @@ class AssignNode extends ExpNode {
         Type retType = typeLhs;
         
         if (typeLhs.isFnType() && typeExp.isFnType()) {
-            ErrMsg.fatal(lineNum(), charNum(), "Function assignment");
+            ErrMsg.fatal(offset(), "Function assignment");
             retType = new ErrorType();
         }
         
         if (typeLhs.isStructDefType() && typeExp.isStructDefType()) {
-            ErrMsg.fatal(lineNum(), charNum(), "Struct name assignment");
+            ErrMsg.fatal(offset(), "Struct name assignment");
             retType = new ErrorType();
         }
         
         if (typeLhs.isStructType() && typeExp.isStructType()) {
-            ErrMsg.fatal(lineNum(), charNum(), "Struct variable assignment");
+            ErrMsg.fatal(offset(), "Struct variable assignment");
             retType = new ErrorType();
         }        
         
         if (!typeLhs.equals(typeExp) && !typeLhs.isErrorType() && !typeExp.isErrorType()) {
-            ErrMsg.fatal(lineNum(), charNum(), "Type mismatch");
+            ErrMsg.fatal(offset(), "Type mismatch");
             retType = new ErrorType();
         }
         
@@ -2171,6 +2437,14 @@ class AssignNode extends ExpNode {
     }
 
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExp.labelCount();
+    }
+
     // 2 kids
     private ExpNode myLhs;
     private ExpNode myExp;
@@ -2188,19 +2462,11 @@ class CallExpNode extends ExpNode {
     }
 
     /**
-     * Return the line number for this call node. 
-     * The line number is the one corresponding to the function name.
-     */
-    public int lineNum() {
-        return myId.lineNum();
-    }
-    
-    /**
-     * Return the char number for this call node.
-     * The char number is the one corresponding to the function name.
+     * Return the offset into the input for this call node.
+     * The offset is the one corresponding to the function name.
      */
-    public int charNum() {
-        return myId.charNum();
+    public int offset() {
+        return myId.offset();
     }
     
     /**
@@ -2218,7 +2484,7 @@ class CallExpNode extends ExpNode {
      */
     public Type typeCheck() {
         if (!myId.typeCheck().isFnType()) {  
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Attempt to call a non-function");
             return new ErrorType();
         }
@@ -2231,7 +2497,7 @@ class CallExpNode extends ExpNode {
         }
         
         if (myExpList.size() != fnSym.getNumParams()) {
-            ErrMsg.fatal(myId.lineNum(), myId.charNum(), 
+            ErrMsg.fatal(myId.offset(), 
                          "Function call with wrong number of args");
             return fnSym.getReturnType();
         }
@@ -2258,6 +2524,14 @@ class CallExpNode extends ExpNode {
     }
 
 
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExpList == null ? 0 : myExpList.labelCount();
+    }
+
     // 2 kids
     private IdNode myId;
     private ExpListNode myExpList;  // possibly null
@@ -2269,19 +2543,11 @@ abstract class UnaryExpNode extends ExpNode {
     }
     
     /**
-     * Return the line number for this unary expression node. 
-     * The line number is the one corresponding to the  operand.
+     * Return the offset into the input for this unary expression node.
+     * The offset is the one corresponding to the  operand.
      */
-    public int lineNum() {
-        return myExp.lineNum();
-    }
-    
-    /**
-     * Return the char number for this unary expression node.
-     * The char number is the one corresponding to the  operand.
-     */
-    public int charNum() {
-        return myExp.charNum();
+    public int offset() {
+        return myExp.offset();
     }
     
     /**
@@ -2297,6 +2563,14 @@ abstract class UnaryExpNode extends ExpNode {
     }
 
     
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExp.labelCount();
+    }
+
     // one child
     protected ExpNode myExp;
 }
@@ -2308,19 +2582,11 @@ abstract class BinaryExpNode extends ExpNode {
     }
     
     /**
-     * Return the line number for this binary expression node. 
-     * The line number is the one corresponding to the left operand.
+     * Return the offset into the input for this binary expression node.
+     * The offset is the one corresponding to the left operand.
      */
-    public int lineNum() {
-        return myExp1.lineNum();
-    }
-    
-    /**
-     * Return the char number for this binary expression node.
-     * The char number is the one corresponding to the left operand.
-     */
-    public int charNum() {
-        return myExp1.charNum();
+    public int offset() {
+        return myExp1.offset();
     }
     
     /**
@@ -2338,6 +2604,14 @@ abstract class BinaryExpNode extends ExpNode {
     }
 
     
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return myExp1.labelCount() + myExp2.labelCount();
+    }
+
     // two kids
     protected ExpNode myExp1;
     protected ExpNode myExp2;
@@ -2360,7 +2634,7 @@ class UnaryMinusNode extends UnaryExpNode {
         Type retType = new IntType();
         
         if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Arithmetic operator applied to non-numeric operand");
             retType = new ErrorType();
         }
@@ -2408,7 +2682,7 @@ class NotNode extends UnaryExpNode {
         Type retType = new BoolType();
         
         if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Logical operator applied to non-bool operand");
             retType = new ErrorType();
         }
@@ -2466,13 +2740,13 @@ abstract class ArithmeticExpNode extends BinaryExpNode {
         Type retType = new IntType();
         
         if (!type1.isErrorType() && !type1.isIntType()) {
-            ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
+            ErrMsg.fatal(myExp1.offset(),
                          "Arithmetic operator applied to non-numeric operand");
             retType = new ErrorType();
         }
         
         if (!type2.isErrorType() && !type2.isIntType()) {
-            ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
+            ErrMsg.fatal(myExp2.offset(),
                          "Arithmetic operator applied to non-numeric operand");
             retType = new ErrorType();
         }
@@ -2499,13 +2773,13 @@ abstract class LogicalExpNode extends BinaryExpNode {
         Type retType = new BoolType();
         
         if (!type1.isErrorType() && !type1.isBoolType()) {
-            ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
+            ErrMsg.fatal(myExp1.offset(),
                          "Logical operator applied to non-bool operand");
             retType = new ErrorType();
         }
         
         if (!type2.isErrorType() && !type2.isBoolType()) {
-            ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
+            ErrMsg.fatal(myExp2.offset(),
                          "Logical operator applied to non-bool operand");
             retType = new ErrorType();
         }
@@ -2532,31 +2806,31 @@ abstract class EqualityExpNode extends BinaryExpNode {
         Type retType = new BoolType();
         
         if (type1.isVoidType() && type2.isVoidType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Equality operator applied to void functions");
             retType = new ErrorType();
         }
         
         if (type1.isFnType() && type2.isFnType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Equality operator applied to functions");
             retType = new ErrorType();
         }
         
         if (type1.isStructDefType() && type2.isStructDefType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Equality operator applied to struct names");
             retType = new ErrorType();
         }
         
         if (type1.isStructType() && type2.isStructType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Equality operator applied to struct variables");
             retType = new ErrorType();
         }        
         
         if (!type1.equals(type2) && !type1.isErrorType() && !type2.isErrorType()) {
-            ErrMsg.fatal(lineNum(), charNum(),
+            ErrMsg.fatal(offset(),
                          "Type mismatch");
             retType = new ErrorType();
         }
@@ -2583,13 +2857,13 @@ abstract class RelationalExpNode extends BinaryExpNode {
         Type retType = new BoolType();
         
         if (!type1.isErrorType() && !type1.isIntType()) {
-            ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
+            ErrMsg.fatal(myExp1.offset(),
                          "Relational operator applied to non-numeric operand");
             retType = new ErrorType();
         }
         
         if (!type2.isErrorType() && !type2.isIntType()) {
-            ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
+            ErrMsg.fatal(myExp2.offset(),
                          "Relational operator applied to non-numeric operand");
             retType = new ErrorType();
         }
@@ -2765,6 +3039,13 @@ class AndNode extends LogicalExpNode {
     return new IntType();
     }
     
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 1 + super.labelCount();
+    }
 }
 
 class OrNode extends LogicalExpNode {
@@ -2801,6 +3082,13 @@ class OrNode extends LogicalExpNode {
     Codegen.genPush("$t0");
     return new BoolType();
     }
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 1 + super.labelCount();
+    }
 }
 
 class EqualsNode extends EqualityExpNode {
@@ -2841,6 +3129,13 @@ class EqualsNode extends EqualityExpNode {
     }
     
     
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 1 + super.labelCount();
+    }
 }
 
 class NotEqualsNode extends EqualityExpNode {
@@ -2879,6 +3174,13 @@ class NotEqualsNode extends EqualityExpNode {
     
     return new BoolType();
     }
+    /**
+     * labelCount
+     * Returns the number of labels codeGen takes for this node.
+     */
+    public int labelCount(){
+    	return 1 + super.labelCount();
+    }
 }
 
 class LessNode extends RelationalExpNode {